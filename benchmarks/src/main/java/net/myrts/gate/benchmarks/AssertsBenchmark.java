@@ -0,0 +1,102 @@
+package net.myrts.gate.benchmarks;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import net.myrts.gate.AnnotationExtractor;
+import net.myrts.gate.Asserts;
+import net.myrts.gate.ContentAnnotation;
+import net.myrts.gate.GateRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * M assertions against N extracted annotations of a synthetic document.
+ * The cold case copies the list so the assertion index is built again, as
+ * for a freshly extracted list; the warm case reuses the indexed list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AssertsBenchmark {
+
+    private static final String TYPE = "Location";
+
+    private static final String[] NAMES = {"Louisville", "Kentucky", "Hepburn", "Griswold"};
+
+    @Param({"100", "1000", "10000"})
+    public int annotations;
+
+    @Param({"10", "100", "1000"})
+    public int assertions;
+
+    private Document doc;
+    private List<ContentAnnotation> extracted;
+    private String[] values;
+    private Long[] starts;
+
+    @Setup
+    public void createAnnotations() throws GateException {
+        GateRuntime.init();
+        StringBuilder text = new StringBuilder();
+        List<long[]> offsets = new ArrayList<>();
+        for (int i = 0; i < annotations; i++) {
+            String name = NAMES[i % NAMES.length];
+            offsets.add(new long[]{text.length(), text.length() + name.length()});
+            text.append(name).append(' ');
+        }
+        doc = Factory.newDocument(text.toString());
+        for (long[] offset : offsets) {
+            FeatureMap features = Factory.newFeatureMap();
+            features.put("locType", "city");
+            doc.getAnnotations().add(offset[0], offset[1], TYPE, features);
+        }
+        extracted = AnnotationExtractor.getContentAnnotations(TYPE, doc, doc.getAnnotations());
+        values = new String[assertions];
+        starts = new Long[assertions];
+        for (int i = 0; i < assertions; i++) {
+            ContentAnnotation expected = extracted.get((int) ((long) i * annotations / assertions));
+            values[i] = expected.getMarkedText();
+            starts[i] = expected.getAnnotation().getStartNode().getOffset();
+        }
+    }
+
+    @TearDown
+    public void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Benchmark
+    public void assertCold() {
+        assertAll(new ArrayList<>(extracted));
+    }
+
+    @Benchmark
+    public void assertWarm() {
+        assertAll(extracted);
+    }
+
+    private void assertAll(List<ContentAnnotation> list) {
+        for (int i = 0; i < assertions; i++) {
+            Asserts.assertAnnotation(list, TYPE, values[i], starts[i]);
+        }
+    }
+}
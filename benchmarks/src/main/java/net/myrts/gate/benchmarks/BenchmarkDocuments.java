@@ -0,0 +1,69 @@
+package net.myrts.gate.benchmarks;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import net.myrts.gate.GateRuntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Synthetic documents of a given size built from the project corpus, and
+ * their annotation with the shared ANNIE application.
+ */
+final class BenchmarkDocuments {
+
+    static final String PLUGIN_NAME = "ANNIE";
+
+    static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final String CORPUS_DOCUMENT = "src/main/resources/corpus/1.txt";
+
+    private BenchmarkDocuments() {
+    }
+
+    /**
+     * Text of exactly {@code size} characters, the corpus document repeated.
+     */
+    static String text(int size) throws IOException {
+        String document = new String(Files.readAllBytes(new File(CORPUS_DOCUMENT).toPath()), StandardCharsets.UTF_8);
+        StringBuilder text = new StringBuilder(size + document.length());
+        while (text.length() < size) {
+            text.append(document).append("\n\n");
+        }
+        text.setLength(size);
+        return text.toString();
+    }
+
+    static CorpusController controller() throws GateException, IOException {
+        return GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME);
+    }
+
+    /**
+     * Run the document through the controller in a single document corpus.
+     */
+    static void execute(CorpusController controller, Document doc) throws GateException {
+        Corpus corpus = Factory.newCorpus("Benchmark corpus");
+        try {
+            corpus.add(doc);
+            controller.setCorpus(corpus);
+            controller.execute();
+        } finally {
+            controller.setCorpus(null);
+            corpus.clear();
+            Factory.deleteResource(corpus);
+        }
+    }
+
+    static Document annotate(String text) throws GateException, IOException {
+        CorpusController controller = controller();
+        Document doc = Factory.newDocument(text);
+        execute(controller, doc);
+        return doc;
+    }
+}
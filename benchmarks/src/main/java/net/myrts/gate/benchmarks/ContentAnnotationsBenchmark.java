@@ -0,0 +1,59 @@
+package net.myrts.gate.benchmarks;
+
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import net.myrts.gate.AnnotationExtractor;
+import net.myrts.gate.ContentAnnotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of content annotations from an annotated document, for a
+ * frequent and a rare annotation type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContentAnnotationsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int documentSize;
+
+    @Param({"Token", "Person"})
+    public String annotationType;
+
+    private Document doc;
+
+    @Setup
+    public void annotate() throws GateException, IOException {
+        doc = BenchmarkDocuments.annotate(BenchmarkDocuments.text(documentSize));
+    }
+
+    @TearDown
+    public void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Benchmark
+    public List<ContentAnnotation> getContentAnnotations() {
+        return AnnotationExtractor.getContentAnnotations(annotationType, doc, doc.getAnnotations());
+    }
+}
@@ -0,0 +1,63 @@
+package net.myrts.gate.benchmarks;
+
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of running ANNIE over one document of each size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class ExecuteBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int documentSize;
+
+    private CorpusController controller;
+    private String text;
+    private Document doc;
+
+    @Setup
+    public void loadController() throws GateException, IOException {
+        controller = BenchmarkDocuments.controller();
+        text = BenchmarkDocuments.text(documentSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void createDocument() throws GateException {
+        doc = Factory.newDocument(text);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Benchmark
+    public Document execute() throws GateException {
+        BenchmarkDocuments.execute(controller, doc);
+        return doc;
+    }
+}
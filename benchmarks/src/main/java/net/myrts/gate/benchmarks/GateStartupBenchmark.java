@@ -0,0 +1,59 @@
+package net.myrts.gate.benchmarks;
+
+import gate.CorpusController;
+import gate.Factory;
+import gate.util.GateException;
+import net.myrts.gate.GateRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of GATE initialisation and of loading the ANNIE application.
+ * Initialisation happens once per JVM, so it is measured cold in a fresh
+ * fork per sample.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GateStartupBenchmark {
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(5)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public CorpusController initAndLoad() throws GateException, IOException {
+        return GateRuntime.loadController(BenchmarkDocuments.PLUGIN_NAME, BenchmarkDocuments.PROJECT_FILE_NAME);
+    }
+
+    /**
+     * Loading the .gapp again in an initialised GATE, as every test did
+     * before applications were registered.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Fork(1)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public void loadApplication(Initialised initialised) throws GateException, IOException {
+        CorpusController controller = GateRuntime.loadController(BenchmarkDocuments.PLUGIN_NAME, BenchmarkDocuments.PROJECT_FILE_NAME);
+        Factory.deleteResource(controller);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Initialised {
+        @Setup
+        public void init() throws GateException {
+            GateRuntime.init();
+        }
+    }
+}
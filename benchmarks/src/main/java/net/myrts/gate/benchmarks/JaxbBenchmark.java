@@ -0,0 +1,83 @@
+package net.myrts.gate.benchmarks;
+
+import document.GateDocument;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import net.myrts.gate.GateXmlWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JAXB unmarshalling and marshalling of {@link GateDocument} for the GATE
+ * XML of annotated documents of each size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JaxbBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int documentSize;
+
+    private JAXBContext context;
+    private byte[] xml;
+    private GateDocument gateDocument;
+
+    @Setup
+    public void writeXml() throws GateException, IOException, JAXBException, XMLStreamException {
+        Document doc = BenchmarkDocuments.annotate(BenchmarkDocuments.text(documentSize));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GateXmlWriter.writeDocument(doc, out);
+        Factory.deleteResource(doc);
+        xml = out.toByteArray();
+        context = JAXBContext.newInstance(GateDocument.class);
+        gateDocument = unmarshal();
+    }
+
+    @Benchmark
+    public GateDocument unmarshal() throws JAXBException {
+        return (GateDocument) context.createUnmarshaller().unmarshal(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public void marshal() throws JAXBException {
+        Marshaller marshaller = context.createMarshaller();
+        marshaller.marshal(gateDocument, new DiscardingOutputStream());
+    }
+
+    /**
+     * Discards the output, so only marshalling is measured.
+     */
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
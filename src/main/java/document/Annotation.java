@@ -9,6 +9,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 
 /**
@@ -43,6 +44,7 @@ public class Annotation {
     @XmlElement(name = "Feature")
     protected List<Feature> feature;
     @XmlAttribute(name = "Type", required = true)
+    @XmlJavaTypeAdapter(InterningAdapter.class)
     protected String type;
     @XmlAttribute(name = "StartNode", required = true)
     protected long startNode;
@@ -0,0 +1,183 @@
+package document;
+
+import java.util.Arrays;
+
+
+/**
+ * Columnar form of an {@link AnnotationSet}. Instead of an object per
+ * annotation and per feature, the table keeps one primitive array per
+ * column: type ids, start and end offsets, and the feature names and
+ * values as indexes into string dictionaries, so a repeated type, name or
+ * value is stored once.
+ * <p>
+ * Annotations are addressed by their row. Features of a row are added
+ * right after the row itself:
+ * <pre>
+ *    AnnotationTable table = new AnnotationTable("testNE");
+ *    table.add("Person", 11, 19);
+ *    table.addFeature("gender", "male");
+ * </pre>
+ */
+public class AnnotationTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String name;
+    private final StringDictionary types = new StringDictionary();
+    private final StringDictionary featureNames = new StringDictionary();
+    private final StringDictionary values = new StringDictionary();
+
+    private int size;
+    private int[] typeIds = new int[INITIAL_CAPACITY];
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private int[] featureOffsets = new int[INITIAL_CAPACITY + 1];
+
+    private int featureCount;
+    private int[] featureNameIds = new int[INITIAL_CAPACITY];
+    private int[] featureValueIds = new int[INITIAL_CAPACITY];
+
+    public AnnotationTable(String name) {
+        this.name = name;
+    }
+
+    public static AnnotationTable fromAnnotationSet(AnnotationSet annotationSet) {
+        AnnotationTable table = new AnnotationTable(annotationSet.getName());
+        for (Annotation annotation : annotationSet.getAnnotation()) {
+            table.add(annotation.getType(), annotation.getStartNode(), annotation.getEndNode());
+            for (Feature feature : annotation.getFeature()) {
+                table.addFeature(feature.getName(), feature.getValue());
+            }
+        }
+        table.trimToSize();
+        return table;
+    }
+
+    public AnnotationSet toAnnotationSet() {
+        AnnotationSet annotationSet = new AnnotationSet();
+        annotationSet.setName(name);
+        for (int row = 0; row < size; row++) {
+            Annotation annotation = new Annotation();
+            annotation.setType(getType(row));
+            annotation.setStartNode(starts[row]);
+            annotation.setEndNode(ends[row]);
+            for (int feature = featureOffsets[row]; feature < featureOffsets[row + 1]; feature++) {
+                Feature f = new Feature();
+                f.setName(featureNames.get(featureNameIds[feature]));
+                f.setValue(values.get(featureValueIds[feature]));
+                annotation.getFeature().add(f);
+            }
+            annotationSet.getAnnotation().add(annotation);
+        }
+        return annotationSet;
+    }
+
+    /**
+     * Adds an annotation without features, returns its row.
+     */
+    public int add(String type, long start, long end) {
+        if (size == typeIds.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            featureOffsets = Arrays.copyOf(featureOffsets, capacity + 1);
+        }
+        typeIds[size] = types.add(type);
+        starts[size] = start;
+        ends[size] = end;
+        featureOffsets[size + 1] = featureCount;
+        return size++;
+    }
+
+    /**
+     * Adds a feature to the last added annotation.
+     */
+    public void addFeature(String featureName, String value) {
+        if (size == 0) {
+            throw new IllegalStateException("No annotation to add feature " + featureName + " to");
+        }
+        if (featureCount == featureNameIds.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, featureCount * 2);
+            featureNameIds = Arrays.copyOf(featureNameIds, capacity);
+            featureValueIds = Arrays.copyOf(featureValueIds, capacity);
+        }
+        featureNameIds[featureCount] = featureNames.add(featureName);
+        featureValueIds[featureCount] = values.add(value);
+        featureCount++;
+        featureOffsets[size] = featureCount;
+    }
+
+    /**
+     * Shrinks the columns to the number of annotations and features.
+     */
+    public void trimToSize() {
+        typeIds = Arrays.copyOf(typeIds, size);
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        featureOffsets = Arrays.copyOf(featureOffsets, size + 1);
+        featureNameIds = Arrays.copyOf(featureNameIds, featureCount);
+        featureValueIds = Arrays.copyOf(featureValueIds, featureCount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Id of the type, to be compared with {@link #getTypeId(int)}, or -1
+     * when no annotation has the type.
+     */
+    public int getTypeId(String type) {
+        return types.indexOf(type);
+    }
+
+    public int getTypeId(int row) {
+        return typeIds[row];
+    }
+
+    public String getType(int row) {
+        return types.get(typeIds[row]);
+    }
+
+    public long getStart(int row) {
+        return starts[row];
+    }
+
+    public long getEnd(int row) {
+        return ends[row];
+    }
+
+    public int getFeatureCount(int row) {
+        return featureOffsets[row + 1] - featureOffsets[row];
+    }
+
+    public String getFeatureName(int row, int feature) {
+        return featureNames.get(featureNameIds[featureOffsets[row] + feature]);
+    }
+
+    public String getFeatureValue(int row, int feature) {
+        return values.get(featureValueIds[featureOffsets[row] + feature]);
+    }
+
+    /**
+     * Value of the named feature or {@code null} when the annotation has no
+     * such feature.
+     */
+    public String getFeatureValue(int row, String featureName) {
+        int nameId = featureNames.indexOf(featureName);
+        if (nameId < 0) {
+            return null;
+        }
+        for (int feature = featureOffsets[row]; feature < featureOffsets[row + 1]; feature++) {
+            if (featureNameIds[feature] == nameId) {
+                return values.get(featureValueIds[feature]);
+            }
+        }
+        return null;
+    }
+}
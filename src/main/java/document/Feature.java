@@ -6,6 +6,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 
 /**
@@ -37,8 +38,10 @@ import javax.xml.bind.annotation.XmlType;
 public class Feature {
 
     @XmlElement(name = "Name", required = true)
+    @XmlJavaTypeAdapter(InterningAdapter.class)
     protected String name;
     @XmlElement(name = "Value", required = true)
+    @XmlJavaTypeAdapter(InterningAdapter.class)
     protected String value;
 
     /**
@@ -0,0 +1,37 @@
+package document;
+
+
+/**
+ * Callbacks of {@link GateDocumentReader}. Every method does nothing by
+ * default, so a handler overrides only the events it needs.
+ * <p>
+ * The objects passed to the callbacks are not retained by the reader and
+ * the annotation set passed to {@link #startAnnotationSet} is never filled
+ * with annotations.
+ */
+public interface GateDocumentHandler {
+
+    /**
+     * A feature of the whole document.
+     */
+    default void documentFeature(Feature feature) {
+    }
+
+    /**
+     * A chunk of the document text, in document order.
+     */
+    default void text(String chunk) {
+    }
+
+    default void startAnnotationSet(AnnotationSet annotationSet) {
+    }
+
+    /**
+     * An annotation of the set, together with its features.
+     */
+    default void annotation(AnnotationSet annotationSet, Annotation annotation) {
+    }
+
+    default void endAnnotationSet(AnnotationSet annotationSet) {
+    }
+}
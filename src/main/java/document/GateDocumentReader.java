@@ -0,0 +1,215 @@
+package document;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * Streaming reader of GATE XML documents. Annotation sets, annotations and
+ * features are passed to a {@link GateDocumentHandler} straight from an
+ * {@link XMLStreamReader}, without unmarshalling the whole
+ * {@link GateDocument} tree, so memory use does not grow with the file.
+ * <p>
+ * Annotation sets and types can be filtered, skipped annotations are not
+ * materialized at all.
+ * <pre>
+ *    new GateDocumentReader()
+ *        .withAnnotationSets("testNE")
+ *        .withAnnotationTypes("Person", "Location")
+ *        .read(file, handler);
+ * </pre>
+ */
+public class GateDocumentReader {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private Set<String> annotationSetNames;
+    private Set<String> annotationTypes;
+    private StringInterner interner;
+
+    /**
+     * Only the named annotation sets are read, {@code null} stands for the
+     * default set.
+     */
+    public GateDocumentReader withAnnotationSets(String... names) {
+        this.annotationSetNames = new HashSet<String>(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * Only annotations of the types are read.
+     */
+    public GateDocumentReader withAnnotationTypes(String... types) {
+        this.annotationTypes = new HashSet<String>(Arrays.asList(types));
+        return this;
+    }
+
+    /**
+     * Annotation types and the names and values of annotation features are
+     * shared through the interner.
+     */
+    public GateDocumentReader withInterner(StringInterner interner) {
+        this.interner = interner;
+        return this;
+    }
+
+    public void read(File file, GateDocumentHandler handler) throws IOException, XMLStreamException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            read(in, handler);
+        }
+    }
+
+    public void read(InputStream in, GateDocumentHandler handler) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if ("GateDocumentFeatures".equals(element)) {
+                    readDocumentFeatures(reader, handler);
+                } else if ("TextWithNodes".equals(element)) {
+                    readText(reader, handler);
+                } else if ("AnnotationSet".equals(element)) {
+                    readAnnotationSet(reader, handler);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void readDocumentFeatures(XMLStreamReader reader, GateDocumentHandler handler) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if ("Feature".equals(reader.getLocalName())) {
+                handler.documentFeature(readFeature(reader, false));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private void readText(XMLStreamReader reader, GateDocumentHandler handler) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    handler.text(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void readAnnotationSet(XMLStreamReader reader, GateDocumentHandler handler) throws XMLStreamException {
+        AnnotationSet annotationSet = new AnnotationSet();
+        annotationSet.setName(reader.getAttributeValue(null, "Name"));
+        if (annotationSetNames != null && !annotationSetNames.contains(annotationSet.getName())) {
+            skipElement(reader);
+            return;
+        }
+        handler.startAnnotationSet(annotationSet);
+        while (nextChild(reader)) {
+            if ("Annotation".equals(reader.getLocalName())) {
+                Annotation annotation = readAnnotation(reader);
+                if (annotation != null) {
+                    handler.annotation(annotationSet, annotation);
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+        handler.endAnnotationSet(annotationSet);
+    }
+
+    private Annotation readAnnotation(XMLStreamReader reader) throws XMLStreamException {
+        String type = reader.getAttributeValue(null, "Type");
+        if (annotationTypes != null && !annotationTypes.contains(type)) {
+            skipElement(reader);
+            return null;
+        }
+        Annotation annotation = new Annotation();
+        annotation.setType(intern(type));
+        annotation.setStartNode(Long.parseLong(reader.getAttributeValue(null, "StartNode")));
+        annotation.setEndNode(Long.parseLong(reader.getAttributeValue(null, "EndNode")));
+        while (nextChild(reader)) {
+            if ("Feature".equals(reader.getLocalName())) {
+                annotation.getFeature().add(readFeature(reader, true));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return annotation;
+    }
+
+    /**
+     * Only annotation features are interned, document features hold
+     * per-document strings such as the original content.
+     */
+    private Feature readFeature(XMLStreamReader reader, boolean interned) throws XMLStreamException {
+        Feature feature = new Feature();
+        while (nextChild(reader)) {
+            String element = reader.getLocalName();
+            if ("Name".equals(element)) {
+                feature.setName(interned ? intern(reader.getElementText()) : reader.getElementText());
+            } else if ("Value".equals(element)) {
+                feature.setValue(interned ? intern(reader.getElementText()) : reader.getElementText());
+            } else {
+                skipElement(reader);
+            }
+        }
+        return feature;
+    }
+
+    private String intern(String string) {
+        return interner == null ? string : interner.intern(string);
+    }
+
+    /**
+     * Moves to the next child element of the current element, returns
+     * {@code false} at the end of the current element.
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
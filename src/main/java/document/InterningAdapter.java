@@ -0,0 +1,50 @@
+package document;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+
+/**
+ * Interns annotation types, feature names and feature values while a
+ * document is unmarshalled, so the few distinct strings of a pipeline are
+ * shared by all annotations instead of being read as new instances.
+ * <p>
+ * JAXB creates one adapter, with its own pool, per unmarshaller. To share a
+ * pool across documents, for example a whole corpus, set an adapter on
+ * every unmarshaller:
+ * <pre>
+ *    StringInterner interner = new StringInterner();
+ *    Unmarshaller unmarshaller = context.createUnmarshaller();
+ *    unmarshaller.setAdapter(InterningAdapter.class, new InterningAdapter(interner));
+ * </pre>
+ * Document features share the {@link Feature} class, so strings longer than
+ * {@link #MAX_INTERNED_LENGTH} are left alone: a pool shared across
+ * documents would otherwise keep the original content of each of them.
+ */
+public class InterningAdapter extends XmlAdapter<String, String> {
+
+    public static final int MAX_INTERNED_LENGTH = 64;
+
+    private final StringInterner interner;
+
+    public InterningAdapter() {
+        this(new StringInterner());
+    }
+
+    public InterningAdapter(StringInterner interner) {
+        this.interner = interner;
+    }
+
+    public StringInterner getInterner() {
+        return interner;
+    }
+
+    @Override
+    public String unmarshal(String value) {
+        return value == null || value.length() > MAX_INTERNED_LENGTH ? value : interner.intern(value);
+    }
+
+    @Override
+    public String marshal(String value) {
+        return value;
+    }
+}
@@ -0,0 +1,58 @@
+package document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Dictionary of distinct strings, each string gets a stable index in the
+ * order it was first added. Used to store annotation types, feature names
+ * and feature values once and refer to them by {@code int}.
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Index of the string, the string is added when it is not in the
+     * dictionary yet. {@code null} is not stored and has the index -1.
+     */
+    public int add(String string) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Index of the string or -1 when it is not in the dictionary.
+     */
+    public int indexOf(String string) {
+        Integer index = string == null ? null : indexes.get(string);
+        return index == null ? -1 : index;
+    }
+
+    public String get(int index) {
+        return index < 0 ? null : strings.get(index);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * The strings in index order.
+     */
+    public List<String> getStrings() {
+        return strings;
+    }
+}
@@ -0,0 +1,50 @@
+package document;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Pool of shared string instances. Unlike {@link String#intern()} the pool
+ * belongs to its owner, for example one corpus, and is collected with it.
+ * Counts every string passed in, so the owner can report how many of them
+ * were repeats.
+ * <p>
+ * Safe for use from several threads.
+ */
+public class StringInterner {
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * The pooled instance equal to the string, {@code null} for {@code null}.
+     */
+    public String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        total.incrementAndGet();
+        String pooled = strings.putIfAbsent(string, string);
+        return pooled == null ? string : pooled;
+    }
+
+    /**
+     * Number of strings passed to {@link #intern(String)}.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Number of distinct strings in the pool.
+     */
+    public int getDistinct() {
+        return strings.size();
+    }
+
+    public String report() {
+        return "Interned " + getTotal() + " strings, " + getDistinct() + " distinct";
+    }
+}
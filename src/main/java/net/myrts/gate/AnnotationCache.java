@@ -0,0 +1,243 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of annotated documents. Entries are GATE XML files keyed by a
+ * hash of the document bytes, the document loading parameters and the
+ * pipeline hash, so a hit is a plain document load instead of a pipeline run.
+ * The directory is bounded in size, the least recently used entries are
+ * evicted first.
+ */
+public class AnnotationCache {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationCache.class);
+
+    private static final String ENTRY_SUFFIX = ".xml";
+
+    private final File directory;
+    private final long maxBytes;
+    private final String pipelineHash;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong pipelineNanos = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private long sizeBytes;
+
+    public AnnotationCache(File directory, long maxBytes, String pipelineHash) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.pipelineHash = pipelineHash;
+        Files.createDirectories(directory.toPath());
+        for (File entry : listEntries()) {
+            sizeBytes += entry.length();
+        }
+    }
+
+    /**
+     * Hash of the application file and of every file under the plugins directory.
+     */
+    public static String hashPipeline(File projectFile, File pluginsHome) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, projectFile.toPath());
+        List<Path> resources;
+        try (Stream<Path> paths = Files.walk(pluginsHome.toPath())) {
+            resources = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path resource : resources) {
+            digest.update(pluginsHome.toPath().relativize(resource).toString().getBytes(StandardCharsets.UTF_8));
+            update(digest, resource);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String hash(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Returns the annotated document for the URL, loading it from the cache
+     * or running it through a pooled controller and storing the result.
+     */
+    public Document getDocument(URL sourceUrl, CorpusConfig config, ControllerPool pool) throws GateException, IOException, InterruptedException {
+        String key = getKey(sourceUrl, config);
+        long start = System.nanoTime();
+        Document doc = load(key);
+        if (doc != null) {
+            hits.incrementAndGet();
+            loadNanos.addAndGet(System.nanoTime() - start);
+            return doc;
+        }
+        CorpusConfig documentConfig = new CorpusConfig(Collections.singletonList(sourceUrl), config.isMarkupAware(),
+                config.isPreserveOriginalContent(), config.isCollectRepositioningInfo());
+        Corpus corpus = pool.annotate(documentConfig);
+        try {
+            doc = corpus.get(0);
+        } finally {
+            corpus.clear();
+            Factory.deleteResource(corpus);
+        }
+        misses.incrementAndGet();
+        pipelineNanos.addAndGet(System.nanoTime() - start);
+        store(key, doc);
+        return doc;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Pipeline time saved by the hits, estimated from the average miss.
+     */
+    public long getSavedMillis() {
+        long missCount = misses.get();
+        if (missCount == 0) {
+            return 0;
+        }
+        long saved = hits.get() * (pipelineNanos.get() / missCount) - loadNanos.get();
+        return Math.max(0, saved / 1000000);
+    }
+
+    public String report() {
+        return "Annotation cache " + directory + ": hits=" + getHits() + ", misses=" + getMisses()
+                + ", size=" + getSizeBytes() + "/" + maxBytes + " bytes, saved ~" + getSavedMillis() + " ms of pipeline time";
+    }
+
+    private String getKey(URL sourceUrl, CorpusConfig config) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = sourceUrl.openStream()) {
+            update(digest, in);
+        }
+        String flags = config.isMarkupAware() + ":" + config.isPreserveOriginalContent() + ":" + config.isCollectRepositioningInfo();
+        return hash((toHex(digest.digest()) + ':' + pipelineHash + ':' + flags).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Document load(String key) throws GateException {
+        File entry = new File(directory, key + ENTRY_SUFFIX);
+        if (!entry.isFile()) {
+            return null;
+        }
+        // touch the entry so eviction sees it as recently used
+        entry.setLastModified(System.currentTimeMillis());
+        try {
+            FeatureMap params = Factory.newFeatureMap();
+            params.put("sourceUrl", entry.toURI().toURL());
+            params.put("encoding", StandardCharsets.UTF_8.name());
+            Document doc = (Document) Factory.createResource("gate.corpora.DocumentImpl", params);
+            OffsetTranslator.restoreRepositioningInfo(doc);
+            return doc;
+        } catch (IOException e) {
+            throw new GateException("Failed to load cached document " + entry, e);
+        }
+    }
+
+    private void store(String key, Document doc) throws IOException {
+        File entry = new File(directory, key + ENTRY_SUFFIX);
+        File tmp = new File(directory, key + ".tmp");
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8)) {
+            out.write(doc.toXml());
+        }
+        synchronized (this) {
+            if (entry.exists()) {
+                sizeBytes -= entry.length();
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            sizeBytes += entry.length();
+            evict(entry);
+        }
+    }
+
+    private void evict(File keep) {
+        if (sizeBytes <= maxBytes) {
+            return;
+        }
+        List<File> entries = listEntries();
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (sizeBytes <= maxBytes) {
+                break;
+            }
+            if (entry.equals(keep)) {
+                continue;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                sizeBytes -= length;
+                LOG.debug("Evicted cached document " + entry);
+            }
+        }
+    }
+
+    private List<File> listEntries() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        List<File> entries = new ArrayList<>();
+        if (files != null) {
+            Collections.addAll(entries, files);
+        }
+        return entries;
+    }
+
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            update(digest, in);
+        }
+    }
+
+    private static void update(MessageDigest digest, InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
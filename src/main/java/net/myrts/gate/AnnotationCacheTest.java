@@ -0,0 +1,168 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.GateConstants;
+import gate.Utils;
+import gate.util.GateException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the on-disk annotation result cache.
+ */
+public class AnnotationCacheTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationCacheTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldLoadSecondRunFromCache() throws Exception {
+        // given
+        AnnotationCache cache = newCache(Long.MAX_VALUE);
+        CorpusConfig config = CorpusConfig.forCorpusFiles("1.txt");
+        URL url = config.getDocumentUrls().get(0);
+
+        // when
+        Document annotated = cache.getDocument(url, config, getPool());
+        Document cached = cache.getDocument(url, config, getPool());
+
+        // then
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(offsets(annotated, "Person"), offsets(cached, "Person"));
+        assertEquals(offsets(annotated, "Location"), offsets(cached, "Location"));
+        assertEquals(annotated.getFeatures().get(GateConstants.ORIGINAL_DOCUMENT_CONTENT_FEATURE_NAME),
+                cached.getFeatures().get(GateConstants.ORIGINAL_DOCUMENT_CONTENT_FEATURE_NAME));
+        LOG.info(cache.report());
+    }
+
+    @Test
+    public void shouldTranslateOffsetsOfMarkupAwareHit() throws Exception {
+        AnnotationCache cache = newCache(Long.MAX_VALUE);
+        File html = folder.newFile("doc.html");
+        Files.write(html.toPath(), "<html><body><p>Henry  Griswold lives in <b>Louisville</b>, Kentucky.</p></body></html>"
+                .getBytes(StandardCharsets.UTF_8));
+        URL url = html.toURI().toURL();
+        CorpusConfig config = new CorpusConfig(Collections.singletonList(url), true, true, true);
+
+        Document annotated = cache.getDocument(url, config, getPool());
+        Document cached = cache.getDocument(url, config, getPool());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(markedTexts(annotated, "Token"), markedTexts(cached, "Token"));
+        assertEquals(markedTexts(annotated, "Location"), markedTexts(cached, "Location"));
+        assertTrue(markedTexts(cached, "Token").contains("Louisville"));
+    }
+
+    @Test
+    public void shouldMissWhenContentChanges() throws Exception {
+        AnnotationCache cache = newCache(Long.MAX_VALUE);
+        File text = folder.newFile("doc.txt");
+        Files.write(text.toPath(), "Henry Griswold lives in Kentucky.".getBytes(StandardCharsets.UTF_8));
+        URL url = text.toURI().toURL();
+        CorpusConfig config = new CorpusConfig(Collections.singletonList(url));
+
+        cache.getDocument(url, config, getPool());
+        Files.write(text.toPath(), "Salmon P. Chase lives in Kentucky.".getBytes(StandardCharsets.UTF_8));
+        cache.getDocument(url, config, getPool());
+
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void shouldKeepOnlyDocumentOfMiss() throws Exception {
+        AnnotationCache cache = newCache(Long.MAX_VALUE);
+        File text = folder.newFile("doc.txt");
+        Files.write(text.toPath(), "Henry Griswold lives in Kentucky.".getBytes(StandardCharsets.UTF_8));
+        URL url = text.toURI().toURL();
+        int loaded = Gate.getCreoleRegister().getLrInstances().size();
+
+        Document annotated = cache.getDocument(url, new CorpusConfig(Collections.singletonList(url)), getPool());
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(loaded + 1, Gate.getCreoleRegister().getLrInstances().size());
+        Factory.deleteResource(annotated);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        File text = folder.newFile("small.txt");
+        Files.write(text.toPath(), "Henry Griswold lives in Kentucky.".getBytes(StandardCharsets.UTF_8));
+        URL small = text.toURI().toURL();
+        URL large = CorpusConfig.forCorpusFiles("1.txt").getDocumentUrls().get(0);
+        AnnotationCache cache = newCache(1);
+
+        cache.getDocument(small, new CorpusConfig(Collections.singletonList(small)), getPool());
+        cache.getDocument(large, new CorpusConfig(Collections.singletonList(large)), getPool());
+        cache.getDocument(small, new CorpusConfig(Collections.singletonList(small)), getPool());
+
+        assertEquals("Bounded cache should keep only the latest entry", 3, cache.getMisses());
+        assertTrue(cache.getSizeBytes() > 0);
+    }
+
+    @Test
+    public void pipelineHashShouldCoverPluginResources() throws Exception {
+        GateRuntime.init();
+        File projectFile = GateRuntime.getProjectFile(PLUGIN_NAME, PROJECT_FILE_NAME);
+        File plugins = folder.newFolder("plugins");
+        File list = new File(plugins, "city.lst");
+        Files.write(list.toPath(), "Hepburn\n".getBytes(StandardCharsets.UTF_8));
+        String before = AnnotationCache.hashPipeline(projectFile, plugins);
+
+        Files.write(list.toPath(), "Hepburn\nLouisville\n".getBytes(StandardCharsets.UTF_8));
+
+        assertNotEquals(before, AnnotationCache.hashPipeline(projectFile, plugins));
+    }
+
+    private AnnotationCache newCache(long maxBytes) throws IOException, GateException {
+        GateRuntime.init();
+        String pipelineHash = AnnotationCache.hashPipeline(GateRuntime.getProjectFile(PLUGIN_NAME, PROJECT_FILE_NAME), Gate.getPluginsHome());
+        return new AnnotationCache(folder.newFolder(), maxBytes, pipelineHash);
+    }
+
+    private ControllerPool getPool() throws IOException, GateException {
+        return GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME);
+    }
+
+    private List<String> markedTexts(Document doc, String annotationType) {
+        List<String> texts = new ArrayList<>();
+        for (ContentAnnotation annotation : AnnotationExtractor.getContentAnnotations(annotationType, doc, doc.getAnnotations())) {
+            texts.add(annotation.getMarkedText());
+        }
+        return texts;
+    }
+
+    private List<Long> offsets(Document doc, String annotationType) {
+        List<Long> offsets = new ArrayList<>();
+        for (Annotation annotation : Utils.inDocumentOrder(doc.getAnnotations().get(annotationType))) {
+            offsets.add(annotation.getStartNode().getOffset());
+            offsets.add(annotation.getEndNode().getOffset());
+        }
+        return offsets;
+    }
+}
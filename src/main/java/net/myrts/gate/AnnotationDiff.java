@@ -0,0 +1,554 @@
+package net.myrts.gate;
+
+import document.GateDocument;
+import document.GateDocumentHandler;
+import document.GateDocumentReader;
+import gate.FeatureMap;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the annotations of two runs over the same documents, for example
+ * before and after a gazetteer or grammar upgrade. Each side of a document
+ * is reduced to a {@link Snapshot}: per annotation type, arrays of spans and
+ * feature signatures sorted by start, end and features. The arrays of a type
+ * are sort-merged once to pair identical annotations, and the remaining ones
+ * are merged again to pair annotations with the same span and then ones
+ * whose spans overlap, which count as changed; the rest were added or
+ * removed. Documents are compared in
+ * parallel, one task per document pair loading both sides, and the counts
+ * per type are merged in document order together with a bounded number of
+ * examples.
+ * <pre>
+ *    AnnotationDiff.Report report = new AnnotationDiff().diffFiles(oldOutputs, newOutputs, null);
+ *    LOG.info(report.toString());
+ * </pre>
+ */
+public class AnnotationDiff {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationDiff.class);
+
+    private static final int DEFAULT_SAMPLES = 10;
+
+    private final int threads;
+    private final int maxSamples;
+
+    public AnnotationDiff() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Diff comparing documents on the given number of threads and keeping at
+     * most {@code maxSamples} examples per annotation type.
+     */
+    public AnnotationDiff(int threads, int maxSamples) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count should be positive, got " + threads);
+        }
+        if (maxSamples < 0) {
+            throw new IllegalArgumentException("Sample count should not be negative, got " + maxSamples);
+        }
+        this.threads = threads;
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Compare the annotation set of live documents, {@code null} stands for
+     * the default set. Documents are paired by position.
+     */
+    public Report diffDocuments(List<gate.Document> before, List<gate.Document> after, String setName)
+            throws GateException, InterruptedException {
+        List<Callable<Snapshot>> beforeSnapshots = new ArrayList<>();
+        for (gate.Document doc : before) {
+            beforeSnapshots.add(() -> Snapshot.of(doc, setName));
+        }
+        List<Callable<Snapshot>> afterSnapshots = new ArrayList<>();
+        for (gate.Document doc : after) {
+            afterSnapshots.add(() -> Snapshot.of(doc, setName));
+        }
+        return diff(beforeSnapshots, afterSnapshots);
+    }
+
+    /**
+     * Compare the annotation set of stored GATE XML documents, streamed
+     * without building a {@link GateDocument}.
+     */
+    public Report diffFiles(List<File> before, List<File> after, String setName) throws GateException, InterruptedException {
+        List<Callable<Snapshot>> beforeSnapshots = new ArrayList<>();
+        for (File file : before) {
+            beforeSnapshots.add(() -> Snapshot.read(file, setName));
+        }
+        List<Callable<Snapshot>> afterSnapshots = new ArrayList<>();
+        for (File file : after) {
+            afterSnapshots.add(() -> Snapshot.read(file, setName));
+        }
+        return diff(beforeSnapshots, afterSnapshots);
+    }
+
+    /**
+     * Compare snapshots paired by position, each loaded by the task comparing it.
+     */
+    public Report diff(List<? extends Callable<Snapshot>> before, List<? extends Callable<Snapshot>> after)
+            throws GateException, InterruptedException {
+        if (before.size() != after.size()) {
+            throw new IllegalArgumentException("Cannot pair " + before.size() + " document(s) with " + after.size());
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, before.size())));
+        try {
+            List<Future<Map<String, TypeDiff>>> results = new ArrayList<>();
+            for (int i = 0; i < before.size(); i++) {
+                Callable<Snapshot> beforeSnapshot = before.get(i);
+                Callable<Snapshot> afterSnapshot = after.get(i);
+                results.add(executor.submit(() -> diff(beforeSnapshot.call(), afterSnapshot.call())));
+            }
+            Map<String, TypeDiff> types = new TreeMap<>();
+            for (Future<Map<String, TypeDiff>> result : results) {
+                Map<String, TypeDiff> documentTypes;
+                try {
+                    documentTypes = result.get();
+                } catch (ExecutionException e) {
+                    for (Future<?> pending : results) {
+                        pending.cancel(true);
+                    }
+                    throw e.getCause() instanceof GateException ? (GateException) e.getCause()
+                            : new GateException("Annotation diff failed", e.getCause());
+                }
+                for (TypeDiff typeDiff : documentTypes.values()) {
+                    TypeDiff merged = types.get(typeDiff.type);
+                    if (merged == null) {
+                        merged = new TypeDiff(typeDiff.type);
+                        types.put(typeDiff.type, merged);
+                    }
+                    merged.add(typeDiff, maxSamples);
+                }
+            }
+            Report report = new Report(before.size(), types, System.nanoTime() - start);
+            LOG.info("Compared " + before.size() + " document(s) in " + report.getNanos() / 1000000 + " ms");
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Differences of one document, per type.
+     */
+    Map<String, TypeDiff> diff(Snapshot before, Snapshot after) {
+        Map<String, TypeDiff> types = new HashMap<>();
+        for (Map.Entry<String, Spans> entry : before.types.entrySet()) {
+            types.put(entry.getKey(), diff(after.name, entry.getKey(), entry.getValue(), after.types.get(entry.getKey())));
+        }
+        for (Map.Entry<String, Spans> entry : after.types.entrySet()) {
+            if (!types.containsKey(entry.getKey())) {
+                types.put(entry.getKey(), diff(after.name, entry.getKey(), null, entry.getValue()));
+            }
+        }
+        return types;
+    }
+
+    private TypeDiff diff(String documentName, String type, Spans before, Spans after) {
+        TypeDiff typeDiff = new TypeDiff(type);
+        Spans empty = new Spans(0);
+        before = before == null ? empty : before;
+        after = after == null ? empty : after;
+        // first merge pairs identical annotations
+        int[] removed = new int[before.size];
+        int[] added = new int[after.size];
+        int removedCount = 0;
+        int addedCount = 0;
+        int i = 0;
+        int j = 0;
+        while (i < before.size || j < after.size) {
+            int order = i == before.size ? 1 : j == after.size ? -1 : before.compare(i, after, j);
+            if (order == 0) {
+                typeDiff.unchanged++;
+                i++;
+                j++;
+            } else if (order < 0) {
+                removed[removedCount++] = i++;
+            } else {
+                added[addedCount++] = j++;
+            }
+        }
+        // second merge pairs the rest with the same span, only their features changed
+        int[] unpairedRemoved = new int[removedCount];
+        int[] unpairedAdded = new int[addedCount];
+        int unpairedRemovedCount = 0;
+        int unpairedAddedCount = 0;
+        i = 0;
+        j = 0;
+        while (i < removedCount || j < addedCount) {
+            int order = i == removedCount ? 1 : j == addedCount ? -1 : before.compareSpan(removed[i], after, added[j]);
+            if (order == 0) {
+                changed(typeDiff, documentName, before.describe(removed[i++]), after.describe(added[j++]));
+            } else if (order < 0) {
+                unpairedRemoved[unpairedRemovedCount++] = removed[i++];
+            } else {
+                unpairedAdded[unpairedAddedCount++] = added[j++];
+            }
+        }
+        // third merge pairs the rest by overlapping spans
+        i = 0;
+        j = 0;
+        while (i < unpairedRemovedCount || j < unpairedAddedCount) {
+            int r = i < unpairedRemovedCount ? unpairedRemoved[i] : -1;
+            int a = j < unpairedAddedCount ? unpairedAdded[j] : -1;
+            if (r >= 0 && a >= 0 && before.overlaps(r, after, a)) {
+                changed(typeDiff, documentName, before.describe(r), after.describe(a));
+                i++;
+                j++;
+            } else if (a < 0 || (r >= 0 && before.starts[r] <= after.starts[a])) {
+                typeDiff.removed++;
+                typeDiff.sample(maxSamples, documentName + ": - " + type + " " + before.describe(r));
+                i++;
+            } else {
+                typeDiff.added++;
+                typeDiff.sample(maxSamples, documentName + ": + " + type + " " + after.describe(a));
+                j++;
+            }
+        }
+        return typeDiff;
+    }
+
+    private void changed(TypeDiff typeDiff, String documentName, String before, String after) {
+        typeDiff.changed++;
+        typeDiff.sample(maxSamples, documentName + ": ~ " + typeDiff.type + " " + before + " -> " + after);
+    }
+
+    /**
+     * Annotations of one set of one document, partitioned by type.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final Map<String, Spans> types;
+
+        private Snapshot(String name, Map<String, Spans> types) {
+            this.name = name;
+            this.types = types;
+        }
+
+        public static Snapshot of(gate.Document doc, String setName) {
+            gate.AnnotationSet annotationSet = setName == null ? doc.getAnnotations() : doc.getAnnotations(setName);
+            Map<String, Spans> types = new HashMap<>();
+            for (String type : annotationSet.getAllTypes()) {
+                gate.AnnotationSet annotations = annotationSet.get(type);
+                Spans spans = new Spans(annotations.size());
+                for (gate.Annotation annotation : annotations) {
+                    spans.add(annotation.getStartNode().getOffset(), annotation.getEndNode().getOffset(),
+                            signature(annotation.getFeatures()));
+                }
+                types.put(type, spans.sort());
+            }
+            return new Snapshot(doc.getName(), types);
+        }
+
+        public static Snapshot of(GateDocument doc, String setName) {
+            Builder builder = new Builder();
+            for (document.AnnotationSet annotationSet : doc.getAnnotationSet()) {
+                if (Objects.equals(setName, annotationSet.getName())) {
+                    for (document.Annotation annotation : annotationSet.getAnnotation()) {
+                        builder.annotation(annotationSet, annotation);
+                    }
+                }
+            }
+            String sourceUrl = doc.getGateDocumentFeatures() == null ? null
+                    : feature(doc.getGateDocumentFeatures().getFeature(), "gate.SourceURL");
+            return builder.build(sourceUrl == null ? "GATE document" : sourceUrl);
+        }
+
+        /**
+         * Snapshot of a stored GATE XML document, read with
+         * {@link GateDocumentReader} one annotation at a time.
+         */
+        public static Snapshot read(File file, String setName) throws GateException {
+            Builder builder = new Builder();
+            try {
+                new GateDocumentReader().withAnnotationSets(setName).read(file, builder);
+            } catch (IOException | XMLStreamException e) {
+                throw new GateException("Cannot read " + file, e);
+            }
+            return builder.build(file.getName());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size(String type) {
+            Spans spans = types.get(type);
+            return spans == null ? 0 : spans.size;
+        }
+
+        private static String feature(List<document.Feature> features, String name) {
+            for (document.Feature feature : features) {
+                if (name.equals(feature.getName())) {
+                    return feature.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Builder implements GateDocumentHandler {
+        private final Map<String, Spans> types = new HashMap<>();
+
+        @Override
+        public void annotation(document.AnnotationSet annotationSet, document.Annotation annotation) {
+            Spans spans = types.get(annotation.getType());
+            if (spans == null) {
+                spans = new Spans(16);
+                types.put(annotation.getType(), spans);
+            }
+            spans.add(annotation.getStartNode(), annotation.getEndNode(), signature(annotation.getFeature()));
+        }
+
+        Snapshot build(String name) {
+            for (Spans spans : types.values()) {
+                spans.sort();
+            }
+            return new Snapshot(name, types);
+        }
+    }
+
+    /**
+     * Features sorted by name in their string form, as written to GATE XML.
+     */
+    private static String signature(FeatureMap featureMap) {
+        if (featureMap == null || featureMap.isEmpty()) {
+            return "{}";
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<Object, Object> entry : featureMap.entrySet()) {
+            sorted.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        return sorted.toString();
+    }
+
+    private static String signature(List<document.Feature> features) {
+        if (features.isEmpty()) {
+            return "{}";
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (document.Feature feature : features) {
+            sorted.put(feature.getName(), String.valueOf(feature.getValue()));
+        }
+        return sorted.toString();
+    }
+
+    /**
+     * Spans and feature signatures of one type, sorted by start, end and
+     * signature.
+     */
+    private static final class Spans {
+        private long[] starts;
+        private long[] ends;
+        private String[] features;
+        private int size;
+
+        Spans(int capacity) {
+            starts = new long[capacity];
+            ends = new long[capacity];
+            features = new String[capacity];
+        }
+
+        void add(long start, long end, String signature) {
+            if (size == starts.length) {
+                int capacity = Math.max(16, size * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                features = Arrays.copyOf(features, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            features[size] = signature;
+            size++;
+        }
+
+        Spans sort() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(a, this, b));
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            String[] sortedFeatures = new String[size];
+            for (int i = 0; i < size; i++) {
+                sortedStarts[i] = starts[order[i]];
+                sortedEnds[i] = ends[order[i]];
+                sortedFeatures[i] = features[order[i]];
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+            features = sortedFeatures;
+            return this;
+        }
+
+        int compare(int i, Spans other, int j) {
+            int order = compareSpan(i, other, j);
+            return order != 0 ? order : features[i].compareTo(other.features[j]);
+        }
+
+        int compareSpan(int i, Spans other, int j) {
+            int order = Long.compare(starts[i], other.starts[j]);
+            return order != 0 ? order : Long.compare(ends[i], other.ends[j]);
+        }
+
+        boolean overlaps(int i, Spans other, int j) {
+            return starts[i] < other.ends[j] && other.starts[j] < ends[i]
+                    || starts[i] == other.starts[j] && ends[i] == other.ends[j];
+        }
+
+        String describe(int i) {
+            return starts[i] + "-" + ends[i] + " " + features[i];
+        }
+    }
+
+    /**
+     * Counts of one annotation type and the first examples of differences.
+     */
+    public static final class TypeDiff {
+        private final String type;
+        private final List<String> samples = new ArrayList<>();
+        private long unchanged;
+        private long added;
+        private long removed;
+        private long changed;
+
+        TypeDiff(String type) {
+            this.type = type;
+        }
+
+        private void sample(int maxSamples, String sample) {
+            if (samples.size() < maxSamples) {
+                samples.add(sample);
+            }
+        }
+
+        private void add(TypeDiff other, int maxSamples) {
+            unchanged += other.unchanged;
+            added += other.added;
+            removed += other.removed;
+            changed += other.changed;
+            for (String sample : other.samples) {
+                sample(maxSamples, sample);
+            }
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Annotations whose span moved or whose features changed.
+         */
+        public long getChanged() {
+            return changed;
+        }
+
+        /**
+         * First examples, prefixed with '+' for added, '-' for removed and
+         * '~' for changed annotations.
+         */
+        public List<String> getSamples() {
+            return Collections.unmodifiableList(samples);
+        }
+
+        public boolean hasDifferences() {
+            return added + removed + changed > 0;
+        }
+
+        @Override
+        public String toString() {
+            return type + ": +" + added + " -" + removed + " ~" + changed + " =" + unchanged;
+        }
+    }
+
+    /**
+     * Differences of all compared documents.
+     */
+    public static final class Report {
+        private final int documents;
+        private final Map<String, TypeDiff> types;
+        private final long nanos;
+
+        Report(int documents, Map<String, TypeDiff> types, long nanos) {
+            this.documents = documents;
+            this.types = Collections.unmodifiableMap(types);
+            this.nanos = nanos;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        /**
+         * Per type differences ordered by type name.
+         */
+        public Map<String, TypeDiff> getTypeDiffs() {
+            return types;
+        }
+
+        public TypeDiff getTypeDiff(String type) {
+            TypeDiff typeDiff = types.get(type);
+            return typeDiff == null ? new TypeDiff(type) : typeDiff;
+        }
+
+        public boolean hasDifferences() {
+            for (TypeDiff typeDiff : types.values()) {
+                if (typeDiff.hasDifferences()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Annotation diff of ").append(documents).append(" document(s):");
+            for (TypeDiff typeDiff : types.values()) {
+                sb.append("\n  ").append(typeDiff);
+                if (typeDiff.hasDifferences()) {
+                    for (String sample : typeDiff.samples) {
+                        sb.append("\n    ").append(sample);
+                    }
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
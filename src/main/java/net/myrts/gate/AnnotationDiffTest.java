@@ -0,0 +1,164 @@
+package net.myrts.gate;
+
+import document.StringInterner;
+import gate.AnnotationSet;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the annotation diff between two runs.
+ */
+public class AnnotationDiffTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationDiffTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final String TEXT = "Hepburn lives in Louisville, Kentucky since May.";
+
+    private static final int DOCUMENT_PAIRS = 200;
+
+    private static final int SAMPLES = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public GateResources resources = new GateResources();
+
+    @Test
+    public void shouldCountAddedRemovedAndChangedAnnotations() throws Exception {
+        // given
+        GateRuntime.init();
+        Document before = Factory.newDocument(TEXT);
+        add(before, "Person", 0, 7, "gender", "male");
+        add(before, "Location", 17, 27, "locType", "city");
+        add(before, "Location", 29, 37, "locType", "region");
+        add(before, "Date", 44, 47, "kind", "date");
+        Document after = Factory.newDocument(TEXT);
+        add(after, "Person", 0, 7, "gender", "female");
+        add(after, "Location", 17, 37, "locType", "city");
+        add(after, "Organization", 38, 43, "orgType", "unknown");
+
+        // when
+        AnnotationDiff.Report report = new AnnotationDiff(2, SAMPLES)
+                .diffDocuments(Collections.singletonList(before), Collections.singletonList(after), null);
+
+        // then
+        LOG.info(report.toString());
+        assertTrue(report.hasDifferences());
+        assertCounts(report.getTypeDiff("Person"), 0, 0, 0, 1);
+        assertCounts(report.getTypeDiff("Location"), 0, 0, 1, 1);
+        assertCounts(report.getTypeDiff("Date"), 0, 0, 1, 0);
+        assertCounts(report.getTypeDiff("Organization"), 0, 1, 0, 0);
+        assertEquals(after.getName() + ": ~ Person 0-7 {gender=male} -> 0-7 {gender=female}",
+                report.getTypeDiff("Person").getSamples().get(0));
+    }
+
+    @Test
+    public void shouldPairSameSpanBeforeOverlappingOne() throws Exception {
+        GateRuntime.init();
+        Document before = Factory.newDocument(TEXT);
+        add(before, "Location", 0, 37, "locType", "address");
+        add(before, "Location", 17, 27, "locType", "city");
+        Document after = Factory.newDocument(TEXT);
+        add(after, "Location", 17, 27, "locType", "town");
+
+        AnnotationDiff.Report report = new AnnotationDiff(1, SAMPLES)
+                .diffDocuments(Collections.singletonList(before), Collections.singletonList(after), null);
+
+        assertCounts(report.getTypeDiff("Location"), 0, 0, 1, 1);
+        assertEquals(Arrays.asList(after.getName() + ": ~ Location 17-27 {locType=city} -> 17-27 {locType=town}",
+                after.getName() + ": - Location 0-37 {locType=address}"), report.getTypeDiff("Location").getSamples());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeSampleCount() {
+        new AnnotationDiff(1, -1);
+    }
+
+    @Test
+    public void shouldCompareStoredDocumentsLikeLiveOnes() throws Exception {
+        GateRuntime.init();
+        Document before = Factory.newDocument(TEXT);
+        add(before, "Person", 0, 7, "gender", "male");
+        add(before, "Location", 17, 27, "locType", "city");
+        Document after = Factory.newDocument(TEXT);
+        add(after, "Person", 0, 7, "gender", "male");
+        add(after, "Location", 29, 37, "locType", "region");
+        StringInterner interner = new StringInterner();
+        List<Callable<AnnotationDiff.Snapshot>> stored = new ArrayList<>();
+        stored.add(() -> AnnotationDiff.Snapshot.of(GateDocumentConverter.toGateDocument(before, interner), null));
+        List<Callable<AnnotationDiff.Snapshot>> live = new ArrayList<>();
+        live.add(() -> AnnotationDiff.Snapshot.of(after, null));
+
+        AnnotationDiff.Report report = new AnnotationDiff(1, SAMPLES).diff(stored, live);
+
+        assertCounts(report.getTypeDiff("Person"), 1, 0, 0, 0);
+        assertCounts(report.getTypeDiff("Location"), 0, 1, 1, 0);
+        assertFalse(new AnnotationDiff(1, SAMPLES).diff(stored, stored).hasDifferences());
+    }
+
+    @Test
+    public void shouldDiffStoredCorpusInParallel() throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        int persons = doc.getAnnotations().get("Person").size();
+        File beforeFile = folder.newFile("before.xml");
+        GateXmlWriter.writeDocument(doc, beforeFile);
+        AnnotationSet annotations = doc.getAnnotations();
+        annotations.remove(annotations.get("Person").iterator().next());
+        add(doc, "Person", 0, 3, "rule", "upgrade");
+        File afterFile = folder.newFile("after.xml");
+        GateXmlWriter.writeDocument(doc, afterFile);
+        List<File> before = new ArrayList<>();
+        List<File> after = new ArrayList<>();
+        for (int i = 0; i < DOCUMENT_PAIRS; i++) {
+            before.add(beforeFile);
+            after.add(afterFile);
+        }
+
+        AnnotationDiff.Report report = new AnnotationDiff(2, SAMPLES).diffFiles(before, after, null);
+
+        AnnotationDiff.TypeDiff personDiff = report.getTypeDiff("Person");
+        assertEquals(DOCUMENT_PAIRS, report.getDocuments());
+        assertEquals(DOCUMENT_PAIRS * (persons - 1L), personDiff.getUnchanged());
+        assertEquals(2L * DOCUMENT_PAIRS, personDiff.getAdded() + personDiff.getRemoved() + 2 * personDiff.getChanged());
+        assertEquals(SAMPLES, personDiff.getSamples().size());
+        assertFalse(report.getTypeDiff("Token").hasDifferences());
+        LOG.info(String.format("%d document pairs in %d ms, %.0f pairs/sec", DOCUMENT_PAIRS, report.getNanos() / 1000000,
+                DOCUMENT_PAIRS * 1e9 / report.getNanos()));
+    }
+
+    private static void assertCounts(AnnotationDiff.TypeDiff typeDiff, long unchanged, long added, long removed, long changed) {
+        assertEquals(typeDiff.getType() + " unchanged", unchanged, typeDiff.getUnchanged());
+        assertEquals(typeDiff.getType() + " added", added, typeDiff.getAdded());
+        assertEquals(typeDiff.getType() + " removed", removed, typeDiff.getRemoved());
+        assertEquals(typeDiff.getType() + " changed", changed, typeDiff.getChanged());
+    }
+
+    private static void add(Document doc, String type, long start, long end, String feature, String value) throws Exception {
+        FeatureMap features = Factory.newFeatureMap();
+        features.put(feature, value);
+        doc.getAnnotations().add(start, end, type, features);
+    }
+}
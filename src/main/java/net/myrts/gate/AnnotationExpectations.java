@@ -0,0 +1,225 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.FeatureMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Set of expected annotations of one type, verified in a single merge pass
+ * over the offset-sorted annotation list. Every missing, extra and shifted
+ * annotation is reported in one failure instead of stopping at the first.
+ * <pre>
+ *    AnnotationExpectations.expectAnnotations("Location")
+ *            .expect("Hepburn", 0L)
+ *            .expect("United States", 68L)
+ *            .verify(annotations);
+ * </pre>
+ */
+public class AnnotationExpectations {
+
+    private static final Comparator<Expected> EXPECTED_ORDER =
+            Comparator.<Expected>comparingLong(e -> e.start).thenComparing(e -> e.value);
+
+    private final String annotationType;
+    private String annotationSubType;
+    private String annotationMinorType;
+    private final List<Expected> expected = new ArrayList<>();
+
+    private AnnotationExpectations(String annotationType) {
+        this.annotationType = annotationType;
+    }
+
+    public static AnnotationExpectations expectAnnotations(String annotationType) {
+        return new AnnotationExpectations(annotationType);
+    }
+
+    /**
+     * Only annotations with this majorType are expected and compared.
+     */
+    public AnnotationExpectations withSubType(String annotationSubType) {
+        this.annotationSubType = annotationSubType;
+        return this;
+    }
+
+    /**
+     * Only annotations with this minorType are expected and compared.
+     */
+    public AnnotationExpectations withMinorType(String annotationMinorType) {
+        this.annotationMinorType = annotationMinorType;
+        return this;
+    }
+
+    public AnnotationExpectations expect(String matchedValue, long startPosition) {
+        expected.add(new Expected(matchedValue, startPosition));
+        return this;
+    }
+
+    /**
+     * Fails with every mismatch between the expectations and the annotations.
+     */
+    public void verify(List<ContentAnnotation> annotations) {
+        List<String> mismatches = mismatches(annotations);
+        if (!mismatches.isEmpty()) {
+            StringBuilder message = new StringBuilder("Annotations of type '").append(annotationType).append('\'');
+            if (annotationSubType != null) {
+                message.append(" majorType '").append(annotationSubType).append('\'');
+            }
+            if (annotationMinorType != null) {
+                message.append(" minorType '").append(annotationMinorType).append('\'');
+            }
+            message.append(" do not match ").append(mismatches.size()).append(" expectation(s):");
+            for (String mismatch : mismatches) {
+                message.append("\n  ").append(mismatch);
+            }
+            fail(message.toString());
+        }
+    }
+
+    /**
+     * Compares the expectations with the annotations of the selected type and
+     * returns a description of every missing, extra and shifted annotation.
+     */
+    public List<String> mismatches(List<ContentAnnotation> annotations) {
+        List<ContentAnnotation> actual = select(annotations);
+        List<Expected> expectedSorted = new ArrayList<>(expected);
+        expectedSorted.sort(EXPECTED_ORDER);
+
+        List<String> mismatches = new ArrayList<>();
+        List<Expected> missing = new ArrayList<>();
+        List<ContentAnnotation> extra = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < expectedSorted.size() || j < actual.size()) {
+            long expectedStart = i < expectedSorted.size() ? expectedSorted.get(i).start : Long.MAX_VALUE;
+            long actualStart = j < actual.size() ? start(actual.get(j)) : Long.MAX_VALUE;
+            if (expectedStart < actualStart) {
+                missing.add(expectedSorted.get(i++));
+            } else if (actualStart < expectedStart) {
+                extra.add(actual.get(j++));
+            } else {
+                // same start offset: pair the group by marked text
+                int expectedEnd = i;
+                while (expectedEnd < expectedSorted.size() && expectedSorted.get(expectedEnd).start == expectedStart) {
+                    expectedEnd++;
+                }
+                int actualEnd = j;
+                while (actualEnd < actual.size() && start(actual.get(actualEnd)) == actualStart) {
+                    actualEnd++;
+                }
+                List<ContentAnnotation> group = new ArrayList<>(actual.subList(j, actualEnd));
+                for (Expected e : expectedSorted.subList(i, expectedEnd)) {
+                    ContentAnnotation match = take(group, e.value);
+                    if (match == null) {
+                        missing.add(e);
+                    } else if (end(match) != e.start + e.value.length()) {
+                        mismatches.add("wrong end: expected '" + e.value + "' at " + e.start + " to end at "
+                                + (e.start + e.value.length()) + " but was " + match);
+                    }
+                }
+                extra.addAll(group);
+                i = expectedEnd;
+                j = actualEnd;
+            }
+        }
+        pairShifted(missing, extra, mismatches);
+        for (Expected e : missing) {
+            mismatches.add("missing: '" + e.value + "' at " + e.start);
+        }
+        for (ContentAnnotation contentAnnotation : extra) {
+            mismatches.add("extra: " + contentAnnotation);
+        }
+        return mismatches;
+    }
+
+    /**
+     * A missing expectation and an extra annotation with the same text are
+     * reported together as one shifted annotation.
+     */
+    private void pairShifted(List<Expected> missing, List<ContentAnnotation> extra, List<String> mismatches) {
+        Map<TextRegion, Deque<ContentAnnotation>> extraByText = new HashMap<>();
+        for (ContentAnnotation contentAnnotation : extra) {
+            extraByText.computeIfAbsent(contentAnnotation.getMarkedTextRegion(), k -> new ArrayDeque<>()).add(contentAnnotation);
+        }
+        Set<ContentAnnotation> shiftedExtras = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Expected> stillMissing = new ArrayList<>();
+        for (Expected e : missing) {
+            Deque<ContentAnnotation> candidates = extraByText.get(new TextRegion(e.value));
+            if (candidates == null || candidates.isEmpty()) {
+                stillMissing.add(e);
+            } else {
+                ContentAnnotation shifted = candidates.poll();
+                shiftedExtras.add(shifted);
+                mismatches.add("shifted: '" + e.value + "' expected at " + e.start + " found at " + start(shifted)
+                        + " (" + (start(shifted) - e.start > 0 ? "+" : "") + (start(shifted) - e.start) + ")");
+            }
+        }
+        missing.clear();
+        missing.addAll(stillMissing);
+        extra.removeIf(shiftedExtras::contains);
+    }
+
+    private List<ContentAnnotation> select(List<ContentAnnotation> annotations) {
+        List<ContentAnnotation> selected = new ArrayList<>();
+        boolean sorted = true;
+        long previous = Long.MIN_VALUE;
+        for (ContentAnnotation contentAnnotation : annotations) {
+            Annotation annotation = contentAnnotation.getAnnotation();
+            FeatureMap featureMap = annotation.getFeatures();
+            if (annotationType.equals(annotation.getType())
+                    && (annotationSubType == null || Objects.equals(annotationSubType, featureMap.get("majorType")))
+                    && (annotationMinorType == null || Objects.equals(annotationMinorType, featureMap.get("minorType")))) {
+                long start = start(contentAnnotation);
+                sorted &= start >= previous;
+                previous = start;
+                selected.add(contentAnnotation);
+            }
+        }
+        if (!sorted) {
+            selected.sort(Comparator.comparingLong(AnnotationExpectations::start));
+        }
+        return selected;
+    }
+
+    private static ContentAnnotation take(List<ContentAnnotation> group, String value) {
+        for (Iterator<ContentAnnotation> it = group.iterator(); it.hasNext(); ) {
+            ContentAnnotation contentAnnotation = it.next();
+            if (contentAnnotation.isMarkedText(value)) {
+                it.remove();
+                return contentAnnotation;
+            }
+        }
+        return null;
+    }
+
+    private static long start(ContentAnnotation contentAnnotation) {
+        return contentAnnotation.getAnnotation().getStartNode().getOffset();
+    }
+
+    private static long end(ContentAnnotation contentAnnotation) {
+        return contentAnnotation.getAnnotation().getEndNode().getOffset();
+    }
+
+    private static final class Expected {
+        private final String value;
+        private final long start;
+
+        private Expected(String value, long start) {
+            this.value = value;
+            this.start = start;
+        }
+    }
+}
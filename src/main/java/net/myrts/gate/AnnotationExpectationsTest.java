@@ -0,0 +1,99 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import gate.util.InvalidOffsetException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+
+import static net.myrts.gate.AnnotationExpectations.expectAnnotations;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the single-pass expectation set.
+ */
+public class AnnotationExpectationsTest {
+
+    //                                    0         1         2         3         4
+    //                                    01234567890123456789012345678901234567890123
+    private static final String CONTENT = "Hepburn met Griswold in Louisville, Kentucky";
+
+    private static Document doc;
+
+    private static List<ContentAnnotation> locations;
+
+    @BeforeClass
+    public static void createDocument() throws GateException {
+        GateRuntime.init();
+        doc = Factory.newDocument(CONTENT);
+        add(0, 7, "Location", "location", "city");
+        add(12, 20, "Person", null, null);
+        add(24, 34, "Location", "location", "city");
+        add(36, 44, "Location", "location", "province");
+        locations = AnnotationExtractor.getContentAnnotations("Location", doc, doc.getAnnotations());
+    }
+
+    @AfterClass
+    public static void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldPassWhenAllExpectationsMatch() {
+        expectAnnotations("Location")
+                .expect("Kentucky", 36L)
+                .expect("Hepburn", 0L)
+                .expect("Louisville", 24L)
+                .verify(locations);
+    }
+
+    @Test
+    public void shouldFilterByMajorAndMinorType() {
+        expectAnnotations("Location").withSubType("location").withMinorType("city")
+                .expect("Hepburn", 0L)
+                .expect("Louisville", 24L)
+                .verify(locations);
+    }
+
+    @Test
+    public void shouldReportEveryMismatchInOneFailure() {
+        AnnotationExpectations expectations = expectAnnotations("Location")
+                .expect("Hepburn", 1L)
+                .expect("Griswold", 12L)
+                .expect("Louisville", 24L);
+
+        List<String> mismatches = expectations.mismatches(locations);
+
+        assertEquals(3, mismatches.size());
+        assertEquals("shifted: 'Hepburn' expected at 1 found at 0 (-1)", mismatches.get(0));
+        assertEquals("missing: 'Griswold' at 12", mismatches.get(1));
+        assertTrue(mismatches.get(2), mismatches.get(2).startsWith("extra: ContentAnnotation{markedText='Kentucky'"));
+        try {
+            expectations.verify(locations);
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Annotations of type 'Location' do not match 3 expectation(s):"));
+            return;
+        }
+        fail("Mismatching expectations should fail");
+    }
+
+    private static void add(long start, long end, String type, String majorType, String minorType) {
+        FeatureMap features = Factory.newFeatureMap();
+        if (majorType != null) {
+            features.put("majorType", majorType);
+            features.put("minorType", minorType);
+        }
+        try {
+            doc.getAnnotations().add(start, end, type, features);
+        } catch (InvalidOffsetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
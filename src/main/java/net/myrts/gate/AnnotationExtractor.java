@@ -0,0 +1,56 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.FeatureMap;
+import gate.GateConstants;
+import gate.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts annotations of one type together with the text they mark in the
+ * original document content. The marked texts are views of the content, not
+ * copies.
+ */
+public final class AnnotationExtractor {
+
+    private AnnotationExtractor() {
+    }
+
+    /**
+     * Returns the annotations of the type ordered by offset. Only the
+     * annotations of the requested type are read through the set's type
+     * index and sorted, so the cost does not depend on the other types.
+     */
+    public static List<ContentAnnotation> getContentAnnotations(String annotationType, Document doc, AnnotationSet annotationSet) {
+        FeatureMap docFeatures = doc.getFeatures();
+        String originalContent = (String)
+                docFeatures.get(GateConstants.ORIGINAL_DOCUMENT_CONTENT_FEATURE_NAME);
+        if (originalContent == null) {
+            originalContent = doc.getContent().toString();
+        }
+        OffsetTranslator translator = OffsetTranslator.forDocument(doc);
+        List<Annotation> annotationList = Utils.inDocumentOrder(annotationSet.get(annotationType));
+        int size = annotationList.size();
+        // starts are in document order and translated in one sweep, ends by binary search
+        long[] starts = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = annotationList.get(i).getStartNode().getOffset();
+        }
+        translator.getOriginalPos(starts, size, false, starts);
+        List<ContentAnnotation> annotations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Annotation annotation = annotationList.get(i);
+            long insertPositionStart = starts[i];
+            long insertPositionEnd = translator.getOriginalPos(annotation.getEndNode().getOffset(), true);
+            if (insertPositionEnd != -1 && insertPositionStart != -1) {
+                // the marked text stays a region of the shared content until it is asked for
+                annotations.add(new ContentAnnotation(annotation, originalContent, (int) insertPositionStart, (int) insertPositionEnd));
+            }
+        }
+        return annotations;
+    }
+}
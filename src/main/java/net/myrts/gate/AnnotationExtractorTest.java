@@ -0,0 +1,159 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases and benchmark for type-indexed annotation extraction.
+ */
+public class AnnotationExtractorTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationExtractorTest.class);
+
+    private static final int DOCUMENT_SIZE = 1024 * 1024;
+
+    private static final int PERSON_EVERY_WORDS = 5000;
+
+    private static final int ITERATIONS = 5;
+
+    private static Document doc;
+
+    @BeforeClass
+    public static void createSyntheticDocument() throws GateException {
+        GateRuntime.init();
+        StringBuilder text = new StringBuilder(DOCUMENT_SIZE + 16);
+        while (text.length() < DOCUMENT_SIZE) {
+            text.append("Henry Griswold lives in Hepburn ");
+        }
+        String content = text.toString();
+        doc = Factory.newDocument(content);
+        AnnotationSet annotations = doc.getAnnotations();
+        int words = 0;
+        int start = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == ' ') {
+                annotations.add((long) start, (long) i, "Token", Factory.newFeatureMap());
+                annotations.add((long) i, (long) i + 1, "SpaceToken", Factory.newFeatureMap());
+                if (words++ % PERSON_EVERY_WORDS == 0 && content.startsWith("Henry", start)) {
+                    annotations.add((long) start, (long) start + "Henry Griswold".length(), "Person", Factory.newFeatureMap());
+                }
+                start = i + 1;
+            }
+        }
+        LOG.info("Synthetic document of " + content.length() + " chars with " + annotations.size() + " annotations");
+    }
+
+    @AfterClass
+    public static void deleteSyntheticDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldExtractSelectedTypeInOffsetOrder() {
+        List<ContentAnnotation> annotations = AnnotationExtractor.getContentAnnotations("Person", doc, doc.getAnnotations());
+
+        assertEquals(extractBySortingWholeSet("Person"), texts(annotations));
+        long previous = -1;
+        for (ContentAnnotation annotation : annotations) {
+            assertEquals("Henry Griswold", annotation.getMarkedText());
+            long start = annotation.getAnnotation().getStartNode().getOffset();
+            assertTrue("Annotations should be ordered by offset", start > previous);
+            previous = start;
+        }
+    }
+
+    @Test
+    public void matchingMarkedTextShouldNotCopyIt() {
+        List<ContentAnnotation> tokens = AnnotationExtractor.getContentAnnotations("Token", doc, doc.getAnnotations());
+        // warm up
+        countMatches(tokens, "Griswold");
+        texts(tokens);
+
+        long allocated = allocatedBytes();
+        int matched = countMatches(tokens, "Griswold");
+        long matchingAllocated = allocatedBytes() - allocated;
+
+        allocated = allocatedBytes();
+        List<String> copies = texts(tokens);
+        long copiesAllocated = allocatedBytes() - allocated;
+
+        LOG.info("Matching " + tokens.size() + " token texts in place: " + matchingAllocated / 1024 + " KB allocated, copying them "
+                + copiesAllocated / 1024 + " KB");
+        assertEquals(tokens.size() / 5, matched);
+        assertEquals(tokens.size(), copies.size());
+        assertTrue("Matching in place should not copy the texts", matchingAllocated < copiesAllocated / 100);
+    }
+
+    @Test
+    public void benchmarkTypeIndexAgainstWholeSetSort() {
+        long wholeSetNanos = Long.MAX_VALUE;
+        long typeIndexNanos = Long.MAX_VALUE;
+        int selected = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            selected = extractBySortingWholeSet("Person").size();
+            wholeSetNanos = Math.min(wholeSetNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            selected = AnnotationExtractor.getContentAnnotations("Person", doc, doc.getAnnotations()).size();
+            typeIndexNanos = Math.min(typeIndexNanos, System.nanoTime() - start);
+        }
+        LOG.info("Extracting " + selected + " of " + doc.getAnnotations().size() + " annotations: whole set sort "
+                + wholeSetNanos / 1000 + " us, type index " + typeIndexNanos / 1000 + " us");
+    }
+
+    /**
+     * Extraction as done before the type index was used: the whole set is
+     * sorted and then filtered.
+     */
+    private List<String> extractBySortingWholeSet(String annotationType) {
+        String content = doc.getContent().toString();
+        List<Annotation> annotationList = new ArrayList<>(doc.getAnnotations());
+        Collections.sort(annotationList, (o1, o2) -> o1.getStartNode().getOffset().compareTo(o2.getStartNode().getOffset()));
+        List<String> texts = new ArrayList<>();
+        for (Annotation annotation : annotationList) {
+            if (annotationType.equals(annotation.getType())) {
+                texts.add(content.substring(annotation.getStartNode().getOffset().intValue(), annotation.getEndNode().getOffset().intValue()));
+            }
+        }
+        return texts;
+    }
+
+    private static int countMatches(List<ContentAnnotation> annotations, String text) {
+        int matched = 0;
+        for (ContentAnnotation annotation : annotations) {
+            if (annotation.isMarkedText(text)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private List<String> texts(List<ContentAnnotation> annotations) {
+        List<String> texts = new ArrayList<>();
+        for (ContentAnnotation annotation : annotations) {
+            texts.add(annotation.getMarkedText());
+        }
+        return texts;
+    }
+}
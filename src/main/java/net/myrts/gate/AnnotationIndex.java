@@ -0,0 +1,168 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.FeatureMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Hash index over a list of content annotations, keyed on marked text,
+ * start offset, majorType and minorType. Built once per list, each
+ * assertion is then a constant time lookup instead of a scan. Marked texts
+ * are keyed by their regions in the content and compared in place.
+ * <p>
+ * Tests making many assertions against one list hold an index from
+ * {@link #of(List)}; the static {@link Asserts} wrappers reuse the index of
+ * the last list, which notices a list replaced, resized or edited at its
+ * first, middle or last element, but not every edit in place.
+ */
+public class AnnotationIndex {
+
+    private static final int TEXT_AND_START = 0;
+    private static final int WITH_MAJOR_TYPE = 1;
+    private static final int WITH_MINOR_TYPE = 2;
+
+    private final List<ContentAnnotation> annotations;
+    private final int size;
+    private final Object[] probes;
+    private final Map<Key, List<ContentAnnotation>> index;
+
+    public AnnotationIndex(List<ContentAnnotation> annotations) {
+        this.annotations = annotations;
+        this.size = annotations.size();
+        this.probes = probe(annotations);
+        this.index = new HashMap<>(annotations.size() * 4);
+        for (ContentAnnotation contentAnnotation : annotations) {
+            Annotation annotation = contentAnnotation.getAnnotation();
+            FeatureMap featureMap = annotation.getFeatures();
+            TextRegion text = contentAnnotation.getMarkedTextRegion();
+            Long start = annotation.getStartNode().getOffset();
+            Object majorType = featureMap.get("majorType");
+            add(new Key(TEXT_AND_START, text, start, null, null), contentAnnotation);
+            add(new Key(WITH_MAJOR_TYPE, text, start, majorType, null), contentAnnotation);
+            add(new Key(WITH_MINOR_TYPE, text, start, majorType, featureMap.get("minorType")), contentAnnotation);
+        }
+    }
+
+    public static AnnotationIndex of(List<ContentAnnotation> annotations) {
+        return new AnnotationIndex(annotations);
+    }
+
+    /**
+     * Whether the index was built over this list in its current state, as
+     * far as a constant time check tells: the same list of the same size
+     * with the same first, middle and last annotations.
+     */
+    public boolean isIndexOf(List<ContentAnnotation> annotations) {
+        return this.annotations == annotations && size == annotations.size() && Arrays.equals(probes, probe(annotations));
+    }
+
+    public List<ContentAnnotation> find(String matchedValue, Long startPosition) {
+        return get(new Key(TEXT_AND_START, matchedValue, startPosition, null, null));
+    }
+
+    public List<ContentAnnotation> find(String annotationSubType, String matchedValue, Long startPosition) {
+        return get(new Key(WITH_MAJOR_TYPE, matchedValue, startPosition, annotationSubType, null));
+    }
+
+    public List<ContentAnnotation> find(String annotationSubType, String annotationMinorType, String matchedValue, Long startPosition) {
+        return get(new Key(WITH_MINOR_TYPE, matchedValue, startPosition, annotationSubType, annotationMinorType));
+    }
+
+    public void assertAnnotation(String annotationType, String matchedValue, Long startPosition) {
+        assertMatched(find(matchedValue, startPosition), annotationType, matchedValue, startPosition);
+    }
+
+    public void assertAnnotation(String annotationType, String annotationSubType, String matchedValue, Long startPosition) {
+        assertMatched(find(annotationSubType, matchedValue, startPosition), annotationType, matchedValue, startPosition);
+    }
+
+    public void assertAnnotation(String annotationType, String annotationSubType, String annotationMinorType, String matchedValue, Long startPosition) {
+        assertMatched(find(annotationSubType, annotationMinorType, matchedValue, startPosition), annotationType, matchedValue, startPosition);
+    }
+
+    private void assertMatched(List<ContentAnnotation> matches, String annotationType, String matchedValue, Long startPosition) {
+        if (matches.isEmpty()) {
+            fail("Failed to match by type '" + annotationType + "' expected value '" + matchedValue + "' start offset=" + startPosition);
+        }
+        for (ContentAnnotation contentAnnotation : matches) {
+            Annotation annotation = contentAnnotation.getAnnotation();
+            assertEquals("Start position should match for " + contentAnnotation, startPosition, annotation.getStartNode().getOffset());
+            assertEquals("End position should match for " + contentAnnotation, Long.valueOf(startPosition + matchedValue.length()), annotation.getEndNode().getOffset());
+        }
+    }
+
+    /**
+     * Elements checked by identity, none when the list has no cheap random access.
+     */
+    private static Object[] probe(List<ContentAnnotation> annotations) {
+        int size = annotations.size();
+        if (size == 0 || !(annotations instanceof RandomAccess)) {
+            return new Object[0];
+        }
+        return new Object[]{annotations.get(0), annotations.get(size / 2), annotations.get(size - 1)};
+    }
+
+    private void add(Key key, ContentAnnotation contentAnnotation) {
+        List<ContentAnnotation> matches = index.get(key);
+        if (matches == null) {
+            matches = new ArrayList<>(1);
+            index.put(key, matches);
+        }
+        matches.add(contentAnnotation);
+    }
+
+    private List<ContentAnnotation> get(Key key) {
+        List<ContentAnnotation> matches = index.get(key);
+        return matches == null ? Collections.<ContentAnnotation>emptyList() : matches;
+    }
+
+    private static final class Key {
+        private final int level;
+        private final CharSequence text;
+        private final Long start;
+        private final Object majorType;
+        private final Object minorType;
+        private final int hash;
+
+        private Key(int level, CharSequence text, Long start, Object majorType, Object minorType) {
+            this.level = level;
+            this.text = text;
+            this.start = start;
+            this.majorType = majorType;
+            this.minorType = minorType;
+            this.hash = Objects.hash(level, text, start, majorType, minorType);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return level == key.level
+                    && Objects.equals(start, key.start)
+                    && TextRegion.contentEquals(text, key.text)
+                    && Objects.equals(majorType, key.majorType)
+                    && Objects.equals(minorType, key.minorType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
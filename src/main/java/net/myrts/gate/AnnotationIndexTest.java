@@ -0,0 +1,153 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import gate.util.InvalidOffsetException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.myrts.gate.Asserts.assertAnnotation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the hash-indexed annotation matcher.
+ */
+public class AnnotationIndexTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationIndexTest.class);
+
+    private static final String WORD = "Hepburn ";
+
+    private static final int ANNOTATIONS = 5000;
+
+    private static Document doc;
+
+    private static List<ContentAnnotation> annotations;
+
+    @BeforeClass
+    public static void createAnnotations() throws GateException {
+        GateRuntime.init();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ANNOTATIONS; i++) {
+            text.append(WORD);
+        }
+        doc = Factory.newDocument(text.toString());
+        for (int i = 0; i < ANNOTATIONS; i++) {
+            long start = (long) i * WORD.length();
+            FeatureMap features = Factory.newFeatureMap();
+            features.put("majorType", "location");
+            features.put("minorType", i % 2 == 0 ? "city" : "region");
+            addLookup(start, start + WORD.length() - 1, features);
+        }
+        annotations = AnnotationExtractor.getContentAnnotations("Lookup", doc, doc.getAnnotations());
+    }
+
+    @AfterClass
+    public static void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldMatchEveryLevelOfTheKey() {
+        assertAnnotation(annotations, "Lookup", "Hepburn", 0L);
+        assertAnnotation(annotations, "Lookup", "location", "Hepburn", 8L);
+        assertAnnotation(annotations, "Lookup", "location", "city", "Hepburn", 16L);
+        assertAnnotation(annotations, "Lookup", "location", "region", "Hepburn", 24L);
+    }
+
+    @Test
+    public void shouldFailOnMissingExpectation() {
+        AnnotationIndex index = new AnnotationIndex(annotations);
+        assertEquals(0, index.find("location", "region", "Hepburn", 0L).size());
+        assertEquals(0, index.find("organization", "Hepburn", 0L).size());
+        try {
+            index.assertAnnotation("Lookup", "Hepburn", 1L);
+        } catch (AssertionError e) {
+            assertEquals("Failed to match by type 'Lookup' expected value 'Hepburn' start offset=1", e.getMessage());
+            return;
+        }
+        fail("Missing annotation should fail");
+    }
+
+    @Test
+    public void shouldReuseIndexForSameList() {
+        AnnotationIndex index = Asserts.indexOf(annotations);
+
+        assertSame(index, Asserts.indexOf(annotations));
+    }
+
+    @Test
+    public void shouldReindexListModifiedInPlace() {
+        List<ContentAnnotation> modified = new ArrayList<>(annotations);
+        AnnotationIndex index = Asserts.indexOf(modified);
+        assertEquals(1, index.find("Hepburn", 0L).size());
+
+        modified.set(0, modified.get(1));
+
+        AnnotationIndex reindexed = Asserts.indexOf(modified);
+        assertNotSame(index, reindexed);
+        assertEquals(0, reindexed.find("Hepburn", 0L).size());
+    }
+
+    @Test
+    public void benchmarkIndexAgainstScan() {
+        long start = System.nanoTime();
+        for (int i = 0; i < ANNOTATIONS; i++) {
+            scan((long) i * WORD.length());
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        AnnotationIndex index = new AnnotationIndex(annotations);
+        for (int i = 0; i < ANNOTATIONS; i++) {
+            index.assertAnnotation("Lookup", "location", "Hepburn", (long) i * WORD.length());
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ANNOTATIONS; i++) {
+            assertAnnotation(annotations, "Lookup", "location", "Hepburn", (long) i * WORD.length());
+        }
+        long assertsNanos = System.nanoTime() - start;
+
+        LOG.info(ANNOTATIONS + " expectations against " + annotations.size() + " annotations: scan "
+                + scanNanos / 1000000 + " ms, index " + indexNanos / 1000000 + " ms, asserts " + assertsNanos / 1000000 + " ms");
+        assertTrue("Static asserts should reuse the index", assertsNanos < scanNanos / 4);
+    }
+
+    /**
+     * Matching as done before the index: every expectation scans the list.
+     */
+    private void scan(Long startPosition) {
+        List<ContentAnnotation> matched = new ArrayList<>();
+        for (ContentAnnotation contentAnnotation : annotations) {
+            Annotation annotation = contentAnnotation.getAnnotation();
+            if ("Hepburn".equals(contentAnnotation.getMarkedText())
+                    && "location".equals(annotation.getFeatures().get("majorType"))
+                    && startPosition.equals(annotation.getStartNode().getOffset())) {
+                matched.add(contentAnnotation);
+            }
+        }
+        assertEquals(1, matched.size());
+    }
+
+    private static void addLookup(long start, long end, FeatureMap features) {
+        try {
+            doc.getAnnotations().add(start, end, "Lookup", features);
+        } catch (InvalidOffsetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
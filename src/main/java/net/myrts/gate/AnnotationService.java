@@ -0,0 +1,194 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process annotation service running requests on the controllers of a
+ * pool, one worker thread per pooled controller. Requests wait in a queue
+ * of bounded capacity; when it is full a request is either rejected, its
+ * future failing with {@link RejectedExecutionException}, or the caller
+ * blocks until a request completes, as chosen by the {@link Overflow}
+ * policy.
+ * <p>
+ * Every request creates and unloads its own document, the returned
+ * {@link ContentAnnotation}s stay valid after the document is unloaded.
+ * Latency from submission to completion is recorded in
+ * {@link #getLatencies()}.
+ */
+public class AnnotationService implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationService.class);
+
+    /**
+     * What happens to a request submitted while the queue is full.
+     */
+    public enum Overflow {
+        REJECT, BLOCK
+    }
+
+    private final ControllerPool pool;
+    private final int queueCapacity;
+    private final Overflow overflow;
+    private final ExecutorService workers;
+    private final Semaphore permits;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    public AnnotationService(ControllerPool pool, int queueCapacity, Overflow overflow) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity should not be negative, got " + queueCapacity);
+        }
+        this.pool = pool;
+        this.queueCapacity = queueCapacity;
+        this.overflow = overflow;
+        // a permit for every running and every queued request
+        this.permits = new Semaphore(pool.getMaxSize() + queueCapacity);
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(pool.getMaxSize(), runnable -> {
+            Thread thread = new Thread(runnable, "annotation-service-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Requests waiting for a worker or running.
+     */
+    public int getPending() {
+        return pool.getMaxSize() + queueCapacity - permits.availablePermits();
+    }
+
+    public int getRejected() {
+        return rejected.get();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Annotations of the type in the text, ordered by offset.
+     */
+    public CompletableFuture<List<ContentAnnotation>> annotate(String text, String annotationType) {
+        return submit(annotationType, () -> Factory.newDocument(text));
+    }
+
+    /**
+     * Annotations of the type in the document at the URL, loaded with the
+     * default {@link CorpusConfig} settings.
+     */
+    public CompletableFuture<List<ContentAnnotation>> annotate(URL url, String annotationType) {
+        return submit(annotationType, () -> new CorpusConfig(Collections.singletonList(url)).createDocument(url));
+    }
+
+    private CompletableFuture<List<ContentAnnotation>> submit(String annotationType, DocumentFactory factory) {
+        CompletableFuture<List<ContentAnnotation>> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        if (!acquire(result)) {
+            return result;
+        }
+        try {
+            workers.execute(() -> {
+                List<ContentAnnotation> annotations = null;
+                Throwable failure = null;
+                try {
+                    annotations = run(annotationType, factory);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // a caller woken by the future sees the request accounted for
+                latencies.record(System.nanoTime() - submitted);
+                permits.release();
+                if (failure == null) {
+                    result.complete(annotations);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private boolean acquire(CompletableFuture<?> result) {
+        if (overflow == Overflow.REJECT) {
+            if (!permits.tryAcquire()) {
+                rejected.incrementAndGet();
+                result.completeExceptionally(new RejectedExecutionException(
+                        "Annotation queue is full, capacity " + queueCapacity));
+                return false;
+            }
+            return true;
+        }
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    private List<ContentAnnotation> run(String annotationType, DocumentFactory factory) throws GateException, InterruptedException {
+        Document doc = factory.create();
+        Corpus corpus = null;
+        try {
+            corpus = Factory.newCorpus("Annotation service corpus");
+            corpus.add(doc);
+            CorpusController controller = pool.borrow();
+            try {
+                controller.setCorpus(corpus);
+                controller.execute();
+            } finally {
+                pool.release(controller);
+            }
+            return AnnotationExtractor.getContentAnnotations(annotationType, doc, doc.getAnnotations());
+        } finally {
+            if (corpus != null) {
+                corpus.clear();
+                Factory.deleteResource(corpus);
+            }
+            Factory.deleteResource(doc);
+        }
+    }
+
+    /**
+     * Stop accepting requests, the queued ones still run. The pool is left
+     * to its owner.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        LOG.info("Annotation service closed, " + latencies + ", rejected=" + rejected.get());
+    }
+
+    private interface DocumentFactory {
+        Document create() throws GateException;
+    }
+}
@@ -0,0 +1,134 @@
+package net.myrts.gate;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the asynchronous annotation service.
+ */
+public class AnnotationServiceTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationServiceTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final String TEXT = "Hepburn moved from Louisville, Kentucky to Boston.";
+
+    private static final int ARRIVALS_PER_SECOND = 10;
+
+    private static final int REQUESTS = 40;
+
+    @Test
+    public void shouldAnnotateTextAndUrls() throws Exception {
+        // given
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        try (AnnotationService service = new AnnotationService(pool, 4, AnnotationService.Overflow.BLOCK)) {
+            // when
+            List<ContentAnnotation> fromText = service.annotate(TEXT, "Location").get();
+            List<ContentAnnotation> fromUrl = service.annotate(
+                    new File("src/main/resources/corpus/1.txt").toURI().toURL(), "Location").get();
+
+            // then
+            List<String> locations = new ArrayList<>();
+            for (ContentAnnotation annotation : fromText) {
+                locations.add(annotation.getMarkedText());
+            }
+            assertTrue(locations.toString(), locations.contains("Louisville"));
+            assertFalse(fromUrl.isEmpty());
+            assertEquals(2, service.getLatencies().getCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectWhenQueueIsFull() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        try (AnnotationService service = new AnnotationService(pool, 1, AnnotationService.Overflow.REJECT)) {
+            List<CompletableFuture<List<ContentAnnotation>>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(service.annotate(TEXT, "Location"));
+            }
+
+            int rejected = 0;
+            for (CompletableFuture<List<ContentAnnotation>> result : results) {
+                try {
+                    assertFalse(result.get().isEmpty());
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RejectedExecutionException);
+                    rejected++;
+                }
+            }
+            assertTrue("At most one running and one queued request, rejected " + rejected, rejected >= 4);
+            assertEquals(rejected, service.getRejected());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldBlockCallersWhenQueueIsFull() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        try (AnnotationService service = new AnnotationService(pool, 0, AnnotationService.Overflow.BLOCK)) {
+            List<CompletableFuture<List<ContentAnnotation>>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(service.annotate(TEXT, "Location"));
+                assertTrue(service.getPending() <= 1);
+            }
+
+            for (CompletableFuture<List<ContentAnnotation>> result : results) {
+                assertFalse(result.get().isEmpty());
+            }
+            assertEquals(0, service.getRejected());
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Sends requests at a fixed rate and measures latency from the intended
+     * send time, so time spent blocked on a full queue is counted as well.
+     */
+    @Test
+    public void shouldReportLatencyAtFixedArrivalRate() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        LatencyHistogram latencies = new LatencyHistogram();
+        try (AnnotationService service = new AnnotationService(pool, 8, AnnotationService.Overflow.BLOCK)) {
+            service.annotate(TEXT, "Location").get();
+            List<CompletableFuture<?>> results = new ArrayList<>();
+            long interval = TimeUnit.SECONDS.toNanos(1) / ARRIVALS_PER_SECOND;
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                long intended = start + i * interval;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                results.add(service.annotate(TEXT, "Location")
+                        .whenComplete((annotations, e) -> latencies.record(System.nanoTime() - intended)));
+            }
+            for (CompletableFuture<?> result : results) {
+                result.get();
+            }
+
+            assertEquals(REQUESTS, latencies.getCount());
+            LOG.info("Latency at " + ARRIVALS_PER_SECOND + " requests/sec: " + latencies);
+        } finally {
+            pool.close();
+        }
+    }
+}
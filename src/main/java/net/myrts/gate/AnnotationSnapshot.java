@@ -0,0 +1,263 @@
+package net.myrts.gate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a snapshot written by {@link AnnotationSnapshotWriter}.
+ * The file is memory-mapped and annotations are read in place through
+ * their set and position, no object is created per annotation. Strings of
+ * the dictionaries are decoded once, on first use.
+ * <pre>
+ *    AnnotationSnapshot snapshot = AnnotationSnapshot.open(file);
+ *    AnnotationSnapshot.Section section = snapshot.getAnnotationSet("testNE");
+ *    int person = snapshot.getTypeIndex("Person");
+ *    for (int i = 0; i &lt; section.size(); i++) {
+ *        if (section.getTypeIndex(i) == person) {
+ *            ... section.getStart(i), section.getFeatureValue(i, "gender")
+ *        }
+ *    }
+ * </pre>
+ * Snapshots are limited to 2 GB, the size of one mapped buffer.
+ */
+public final class AnnotationSnapshot {
+
+    static final int MAGIC = 0x47555331;
+
+    static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final CharBuffer text;
+    private final Strings types;
+    private final Strings featureNames;
+    private final Strings values;
+    private final Map<String, Integer> typeIndexes = new HashMap<>();
+    private final List<Section> sections = new ArrayList<>();
+
+    private AnnotationSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an annotation snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported annotation snapshot version " + buffer.getInt(4));
+        }
+        int textLength = buffer.getInt(8);
+        ByteBuffer textBytes = buffer.duplicate();
+        textBytes.position(12);
+        textBytes.limit(12 + textLength * 2);
+        this.text = textBytes.slice().asCharBuffer();
+        int position = 12 + textLength * 2;
+        this.types = new Strings(position);
+        this.featureNames = new Strings(types.end);
+        this.values = new Strings(featureNames.end);
+        for (int i = 0; i < types.size(); i++) {
+            typeIndexes.put(types.get(i), i);
+        }
+        position = values.end;
+        int setCount = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < setCount; i++) {
+            Section section = new Section(position);
+            sections.add(section);
+            position = section.end;
+        }
+    }
+
+    public static AnnotationSnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AnnotationSnapshot(buffer);
+        }
+    }
+
+    /**
+     * The document text, a view of the mapped file.
+     */
+    public CharSequence getText() {
+        return text.duplicate();
+    }
+
+    /**
+     * The default annotation set, its name is {@code null}.
+     */
+    public Section getAnnotations() {
+        return getAnnotationSet(null);
+    }
+
+    /**
+     * The annotation set or {@code null} when the snapshot has no set with
+     * the name.
+     */
+    public Section getAnnotationSet(String name) {
+        for (Section section : sections) {
+            if (name == null ? section.getName() == null : name.equals(section.getName())) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    public List<Section> getAnnotationSets() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * Index of the annotation type, to be compared with
+     * {@link Section#getTypeIndex(int)}, or -1 when no annotation has the type.
+     */
+    public int getTypeIndex(String type) {
+        Integer index = typeIndexes.get(type);
+        return index == null ? -1 : index;
+    }
+
+    public String getType(int typeIndex) {
+        return types.get(typeIndex);
+    }
+
+    /**
+     * Annotations of one set, addressed by their position in document order.
+     */
+    public final class Section {
+        private final int name;
+        private final int size;
+        private final int ids;
+        private final int starts;
+        private final int ends;
+        private final int typeIndexes;
+        private final int featureOffsets;
+        private final int featureNameIndexes;
+        private final int featureValueIndexes;
+        private final int end;
+
+        private Section(int position) {
+            this.name = buffer.getInt(position);
+            this.size = buffer.getInt(position + 4);
+            int featureCount = buffer.getInt(position + 8);
+            this.ids = position + 12;
+            this.starts = ids + size * 4;
+            this.ends = starts + size * 4;
+            this.typeIndexes = ends + size * 4;
+            this.featureOffsets = typeIndexes + size * 4;
+            this.featureNameIndexes = featureOffsets + (size + 1) * 4;
+            this.featureValueIndexes = featureNameIndexes + featureCount * 4;
+            this.end = featureValueIndexes + featureCount * 4;
+        }
+
+        public String getName() {
+            return values.get(name);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getId(int i) {
+            return buffer.getInt(ids + i * 4);
+        }
+
+        public int getStart(int i) {
+            return buffer.getInt(starts + i * 4);
+        }
+
+        public int getEnd(int i) {
+            return buffer.getInt(ends + i * 4);
+        }
+
+        public int getTypeIndex(int i) {
+            return buffer.getInt(typeIndexes + i * 4);
+        }
+
+        public String getType(int i) {
+            return types.get(getTypeIndex(i));
+        }
+
+        /**
+         * The annotated text, a view of the mapped file.
+         */
+        public CharSequence getMarkedText(int i) {
+            return text.subSequence(getStart(i), getEnd(i));
+        }
+
+        public int getFeatureCount(int i) {
+            return featureOffset(i + 1) - featureOffset(i);
+        }
+
+        public String getFeatureName(int i, int feature) {
+            return featureNames.get(buffer.getInt(featureNameIndexes + (featureOffset(i) + feature) * 4));
+        }
+
+        public String getFeatureValue(int i, int feature) {
+            return values.get(buffer.getInt(featureValueIndexes + (featureOffset(i) + feature) * 4));
+        }
+
+        /**
+         * Value of the named feature or {@code null} when the annotation
+         * has no such feature.
+         */
+        public String getFeatureValue(int i, String featureName) {
+            for (int feature = featureOffset(i); feature < featureOffset(i + 1); feature++) {
+                if (featureName.equals(featureNames.get(buffer.getInt(featureNameIndexes + feature * 4)))) {
+                    return values.get(buffer.getInt(featureValueIndexes + feature * 4));
+                }
+            }
+            return null;
+        }
+
+        private int featureOffset(int i) {
+            return buffer.getInt(featureOffsets + i * 4);
+        }
+    }
+
+    /**
+     * String table of the snapshot, decoded lazily.
+     */
+    private final class Strings {
+        private final int[] positions;
+        private final String[] decoded;
+        private final int end;
+
+        private Strings(int position) {
+            int count = buffer.getInt(position);
+            positions = new int[count];
+            decoded = new String[count];
+            position += 4;
+            for (int i = 0; i < count; i++) {
+                positions[i] = position;
+                position += 4 + buffer.getInt(position);
+            }
+            end = position;
+        }
+
+        private int size() {
+            return positions.length;
+        }
+
+        private String get(int index) {
+            if (index < 0) {
+                return null;
+            }
+            String string = decoded[index];
+            if (string == null) {
+                byte[] bytes = new byte[buffer.getInt(positions[index])];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(positions[index] + 4 + i);
+                }
+                string = new String(bytes, StandardCharsets.UTF_8);
+                decoded[index] = string;
+            }
+            return string;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.myrts.gate;
+
+import document.GateDocument;
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.Utils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the binary annotation snapshot.
+ */
+public class AnnotationSnapshotTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationSnapshotTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int SYNTHETIC_TOKENS = 200000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadBackAnnotatedDocument() throws Exception {
+        // given
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        File file = folder.newFile("1.txt.snapshot");
+
+        // when
+        AnnotationSnapshotWriter.write(doc, file);
+        AnnotationSnapshot snapshot = AnnotationSnapshot.open(file);
+
+        // then
+        assertEquals(doc.getContent().toString(), snapshot.getText().toString());
+        assertEquals(describe(doc.getAnnotations()), describe(snapshot.getAnnotations()));
+        assertEquals(1 + doc.getNamedAnnotationSets().size(), snapshot.getAnnotationSets().size());
+        for (String name : doc.getNamedAnnotationSets().keySet()) {
+            assertEquals(describe(doc.getAnnotations(name)), describe(snapshot.getAnnotationSet(name)));
+        }
+        assertNull(snapshot.getAnnotationSet("missing"));
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+    }
+
+    @Test
+    public void shouldWriteSameSnapshotFromGateDocument() throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        File xmlFile = folder.newFile("1.txt.xml");
+        GateXmlWriter.writeDocument(doc, xmlFile);
+        GateDocument gateDoc = (GateDocument) JAXBContext.newInstance(GateDocument.class).createUnmarshaller().unmarshal(xmlFile);
+        File fromGate = folder.newFile("gate.snapshot");
+        File fromJaxb = folder.newFile("jaxb.snapshot");
+
+        AnnotationSnapshotWriter.write(doc, fromGate);
+        AnnotationSnapshotWriter.write(gateDoc, fromJaxb);
+
+        AnnotationSnapshot expected = AnnotationSnapshot.open(fromGate);
+        AnnotationSnapshot actual = AnnotationSnapshot.open(fromJaxb);
+        assertEquals(expected.getText().toString(), actual.getText().toString());
+        AnnotationSnapshot.Section testNE = actual.getAnnotationSet("testNE");
+        assertEquals(describeWithoutIds(expected.getAnnotationSet("testNE")), describeWithoutIds(testNE));
+        int firstPerson = actual.getTypeIndex("FirstPerson");
+        for (int i = 0; i < testNE.size(); i++) {
+            if (testNE.getTypeIndex(i) == firstPerson) {
+                assertEquals("Salmon", testNE.getMarkedText(i).toString());
+                assertEquals(115, testNE.getStart(i));
+                break;
+            }
+        }
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+    }
+
+    @Test
+    public void shouldReloadFasterThanJaxb() throws Exception {
+        Document doc = SyntheticDocuments.create(SYNTHETIC_TOKENS, i -> i % 10 == 0 ? "Person" : "Token");
+        File xmlFile = folder.newFile("synthetic.xml");
+        File snapshotFile = folder.newFile("synthetic.snapshot");
+        GateXmlWriter.writeDocument(doc, xmlFile);
+        AnnotationSnapshotWriter.write(doc, snapshotFile);
+        Factory.deleteResource(doc);
+        JAXBContext context = JAXBContext.newInstance(GateDocument.class);
+        // warm up both paths
+        countPersonsWithJaxb(context, xmlFile);
+        countPersonsInSnapshot(snapshotFile);
+
+        long start = System.nanoTime();
+        int jaxbPersons = countPersonsWithJaxb(context, xmlFile);
+        long jaxbNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        int snapshotPersons = countPersonsInSnapshot(snapshotFile);
+        long snapshotNanos = System.nanoTime() - start;
+
+        LOG.info("Reload of " + SYNTHETIC_TOKENS + " annotations: JAXB " + jaxbNanos / 1000000 + " ms from " + xmlFile.length() / 1024
+                + " KB, snapshot " + snapshotNanos / 1000000 + " ms from " + snapshotFile.length() / 1024 + " KB");
+        assertEquals(SYNTHETIC_TOKENS / 10, jaxbPersons);
+        assertEquals(jaxbPersons, snapshotPersons);
+        assertTrue("Snapshot should reload faster than JAXB", snapshotNanos < jaxbNanos);
+    }
+
+    private static int countPersonsWithJaxb(JAXBContext context, File file) throws Exception {
+        GateDocument gateDoc = (GateDocument) context.createUnmarshaller().unmarshal(file);
+        int persons = 0;
+        for (document.Annotation annotation : gateDoc.getAnnotationSet().get(0).getAnnotation()) {
+            if ("Person".equals(annotation.getType())) {
+                persons++;
+            }
+        }
+        return persons;
+    }
+
+    private static int countPersonsInSnapshot(File file) throws Exception {
+        AnnotationSnapshot snapshot = AnnotationSnapshot.open(file);
+        AnnotationSnapshot.Section section = snapshot.getAnnotations();
+        int person = snapshot.getTypeIndex("Person");
+        int persons = 0;
+        for (int i = 0; i < section.size(); i++) {
+            if (section.getTypeIndex(i) == person) {
+                persons++;
+            }
+        }
+        return persons;
+    }
+
+    private static List<String> describe(AnnotationSet annotationSet) {
+        List<String> described = new ArrayList<>();
+        for (Annotation annotation : Utils.inDocumentOrder(annotationSet)) {
+            Map<String, String> features = new TreeMap<>();
+            for (Map.Entry<Object, Object> feature : annotation.getFeatures().entrySet()) {
+                features.put(String.valueOf(feature.getKey()), feature.getValue() == null ? null : String.valueOf(feature.getValue()));
+            }
+            described.add(annotation.getId() + " " + annotation.getType() + " " + Utils.start(annotation) + "-" + Utils.end(annotation)
+                    + " " + features);
+        }
+        return described;
+    }
+
+    private static List<String> describe(AnnotationSnapshot.Section section) {
+        List<String> described = new ArrayList<>();
+        for (int i = 0; i < section.size(); i++) {
+            described.add(section.getId(i) + " " + describeWithoutId(section, i));
+        }
+        return described;
+    }
+
+    private static List<String> describeWithoutIds(AnnotationSnapshot.Section section) {
+        List<String> described = new ArrayList<>();
+        for (int i = 0; i < section.size(); i++) {
+            described.add(describeWithoutId(section, i));
+        }
+        return described;
+    }
+
+    private static String describeWithoutId(AnnotationSnapshot.Section section, int i) {
+        Map<String, String> features = new TreeMap<>();
+        for (int feature = 0; feature < section.getFeatureCount(i); feature++) {
+            features.put(section.getFeatureName(i, feature), section.getFeatureValue(i, feature));
+        }
+        return section.getType(i) + " " + section.getStart(i) + "-" + section.getEnd(i) + " " + features;
+    }
+}
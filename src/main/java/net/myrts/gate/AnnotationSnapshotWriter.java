@@ -0,0 +1,188 @@
+package net.myrts.gate;
+
+import document.Feature;
+import document.GateDocument;
+import document.Node;
+import document.StringDictionary;
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes annotated documents in the binary snapshot format read by
+ * {@link AnnotationSnapshot}. All numbers are big endian:
+ * <pre>
+ *    int magic, int version
+ *    int textLength, char[textLength]                      document text as UTF-16
+ *    types, feature names, values                          each: int count, count * (int byteLength, UTF-8 bytes)
+ *    int setCount, per set:
+ *        int name                                          index into values, -1 for the default set
+ *        int size, int featureCount
+ *        int[size] ids, int[size] starts, int[size] ends, int[size] types
+ *        int[size + 1] featureOffsets                      features of annotation i are [offsets[i], offsets[i + 1])
+ *        int[featureCount] featureNames, int[featureCount] featureValues (-1 for null)
+ * </pre>
+ * Annotations of a set are stored in document order. Feature values are
+ * stored in their string form, as in GATE XML.
+ */
+public final class AnnotationSnapshotWriter {
+
+    private final StringDictionary types = new StringDictionary();
+    private final StringDictionary featureNames = new StringDictionary();
+    private final StringDictionary values = new StringDictionary();
+    private final List<Section> sections = new ArrayList<>();
+
+    private AnnotationSnapshotWriter() {
+    }
+
+    public static void write(Document doc, File file) throws IOException {
+        AnnotationSnapshotWriter writer = new AnnotationSnapshotWriter();
+        writer.addAnnotationSet(null, doc.getAnnotations());
+        Map<String, AnnotationSet> namedAnnotationSets = doc.getNamedAnnotationSets();
+        if (namedAnnotationSets != null) {
+            for (Map.Entry<String, AnnotationSet> entry : namedAnnotationSets.entrySet()) {
+                writer.addAnnotationSet(entry.getKey(), entry.getValue());
+            }
+        }
+        writer.write(doc.getContent().toString(), file);
+    }
+
+    public static void write(GateDocument gateDoc, File file) throws IOException {
+        AnnotationSnapshotWriter writer = new AnnotationSnapshotWriter();
+        for (document.AnnotationSet annotationSet : gateDoc.getAnnotationSet()) {
+            writer.addAnnotationSet(annotationSet);
+        }
+        StringBuilder text = new StringBuilder();
+        for (Object content : gateDoc.getTextWithNodes().getContent()) {
+            if (!(content instanceof Node)) {
+                text.append(content);
+            }
+        }
+        writer.write(text.toString(), file);
+    }
+
+    private void addAnnotationSet(String name, AnnotationSet annotationSet) {
+        List<Annotation> annotations = Utils.inDocumentOrder(annotationSet);
+        Section section = new Section(values.add(name), annotations.size());
+        for (int i = 0; i < annotations.size(); i++) {
+            Annotation annotation = annotations.get(i);
+            section.ids[i] = annotation.getId();
+            section.starts[i] = annotation.getStartNode().getOffset().intValue();
+            section.ends[i] = annotation.getEndNode().getOffset().intValue();
+            section.types[i] = types.add(annotation.getType());
+            for (Map.Entry<Object, Object> feature : annotation.getFeatures().entrySet()) {
+                section.addFeature(featureNames.add(String.valueOf(feature.getKey())),
+                        values.add(feature.getValue() == null ? null : String.valueOf(feature.getValue())));
+            }
+            section.featureOffsets[i + 1] = section.featureCount;
+        }
+        sections.add(section);
+    }
+
+    private void addAnnotationSet(document.AnnotationSet annotationSet) {
+        List<document.Annotation> annotations = new ArrayList<>(annotationSet.getAnnotation());
+        annotations.sort(Comparator.comparingLong(document.Annotation::getStartNode).thenComparingLong(document.Annotation::getEndNode));
+        Section section = new Section(values.add(annotationSet.getName()), annotations.size());
+        for (int i = 0; i < annotations.size(); i++) {
+            document.Annotation annotation = annotations.get(i);
+            // the document package has no annotation ids, the position in the set is used instead
+            section.ids[i] = i;
+            section.starts[i] = (int) annotation.getStartNode();
+            section.ends[i] = (int) annotation.getEndNode();
+            section.types[i] = types.add(annotation.getType());
+            for (Feature feature : annotation.getFeature()) {
+                section.addFeature(featureNames.add(feature.getName()), values.add(feature.getValue()));
+            }
+            section.featureOffsets[i + 1] = section.featureCount;
+        }
+        sections.add(section);
+    }
+
+    private void write(String text, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(AnnotationSnapshot.MAGIC);
+            out.writeInt(AnnotationSnapshot.VERSION);
+            out.writeInt(text.length());
+            out.writeChars(text);
+            writeStrings(types, out);
+            writeStrings(featureNames, out);
+            writeStrings(values, out);
+            out.writeInt(sections.size());
+            for (Section section : sections) {
+                section.write(out);
+            }
+        }
+    }
+
+    private static void writeStrings(StringDictionary dictionary, DataOutputStream out) throws IOException {
+        out.writeInt(dictionary.size());
+        for (String string : dictionary.getStrings()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeInts(int[] ints, int length, DataOutputStream out) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(ints[i]);
+        }
+    }
+
+    private static final class Section {
+        private final int name;
+        private final int[] ids;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] types;
+        private final int[] featureOffsets;
+        private int[] featureNames = new int[16];
+        private int[] featureValues = new int[16];
+        private int featureCount;
+
+        private Section(int name, int size) {
+            this.name = name;
+            this.ids = new int[size];
+            this.starts = new int[size];
+            this.ends = new int[size];
+            this.types = new int[size];
+            this.featureOffsets = new int[size + 1];
+        }
+
+        private void addFeature(int featureName, int featureValue) {
+            if (featureCount == featureNames.length) {
+                featureNames = Arrays.copyOf(featureNames, featureCount * 2);
+                featureValues = Arrays.copyOf(featureValues, featureCount * 2);
+            }
+            featureNames[featureCount] = featureName;
+            featureValues[featureCount] = featureValue;
+            featureCount++;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(name);
+            out.writeInt(ids.length);
+            out.writeInt(featureCount);
+            writeInts(ids, ids.length, out);
+            writeInts(starts, starts.length, out);
+            writeInts(ends, ends.length, out);
+            writeInts(types, types.length, out);
+            writeInts(featureOffsets, featureOffsets.length, out);
+            writeInts(featureNames, featureCount, out);
+            writeInts(featureValues, featureCount, out);
+        }
+    }
+}
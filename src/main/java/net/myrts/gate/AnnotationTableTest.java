@@ -0,0 +1,167 @@
+package net.myrts.gate;
+
+import document.Annotation;
+import document.AnnotationSet;
+import document.AnnotationTable;
+import document.Feature;
+import document.GateDocument;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the columnar annotation table.
+ */
+public class AnnotationTableTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationTableTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int SYNTHETIC_ANNOTATIONS = 1000000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldConvertAnnotationSetBothWays() throws Exception {
+        // given
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        File file = folder.newFile("1.txt.xml");
+        GateXmlWriter.writeDocument(doc, file);
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+        GateDocument gateDoc = (GateDocument) JAXBContext.newInstance(GateDocument.class).createUnmarshaller().unmarshal(file);
+
+        for (AnnotationSet annotationSet : gateDoc.getAnnotationSet()) {
+            // when
+            AnnotationTable table = AnnotationTable.fromAnnotationSet(annotationSet);
+
+            // then
+            assertEquals(annotationSet.getAnnotation().size(), table.size());
+            assertEquals(describe(annotationSet), describe(table.toAnnotationSet()));
+        }
+    }
+
+    @Test
+    public void shouldLookUpFeaturesByName() {
+        AnnotationTable table = new AnnotationTable("testNE");
+        table.add("Token", 0, 7);
+        table.addFeature("kind", "word");
+        table.addFeature("orth", "upperInitial");
+        table.add("SpaceToken", 7, 8);
+        int person = table.add("Person", 11, 19);
+        table.addFeature("gender", "male");
+
+        assertEquals(3, table.size());
+        assertEquals(table.getTypeId("Person"), table.getTypeId(person));
+        assertEquals(-1, table.getTypeId("Location"));
+        assertEquals("upperInitial", table.getFeatureValue(0, "orth"));
+        assertEquals(0, table.getFeatureCount(1));
+        assertNull(table.getFeatureValue(1, "kind"));
+        assertEquals("gender", table.getFeatureName(person, 0));
+        assertEquals("male", table.getFeatureValue(person, "gender"));
+        assertEquals(19L, table.getEnd(person));
+    }
+
+    @Test
+    public void shouldGrowAfterTrimToSize() {
+        AnnotationTable empty = new AnnotationTable("x");
+        empty.trimToSize();
+        empty.add("Token", 0, 1);
+        empty.addFeature("kind", "word");
+
+        AnnotationSet withoutFeatures = new AnnotationSet();
+        Annotation annotation = new Annotation();
+        annotation.setType("SpaceToken");
+        annotation.setStartNode(1);
+        annotation.setEndNode(2);
+        withoutFeatures.getAnnotation().add(annotation);
+        AnnotationTable trimmed = AnnotationTable.fromAnnotationSet(withoutFeatures);
+        int person = trimmed.add("Person", 2, 9);
+        trimmed.addFeature("gender", "male");
+
+        assertEquals(1, empty.size());
+        assertEquals("word", empty.getFeatureValue(0, "kind"));
+        assertEquals(2, trimmed.size());
+        assertEquals(0, trimmed.getFeatureCount(0));
+        assertEquals("male", trimmed.getFeatureValue(person, "gender"));
+    }
+
+    @Test
+    public void tableShouldTakeFractionOfObjectMemory() {
+        long baseline = usedMemory();
+        AnnotationSet annotationSet = syntheticAnnotationSet(SYNTHETIC_ANNOTATIONS);
+        long objects = usedMemory() - baseline;
+
+        AnnotationTable table = AnnotationTable.fromAnnotationSet(annotationSet);
+        // only the table stays reachable
+        annotationSet = null;
+        long columns = usedMemory() - baseline;
+
+        LOG.info(SYNTHETIC_ANNOTATIONS + " annotations: objects " + objects / SYNTHETIC_ANNOTATIONS + " bytes each, table "
+                + columns / SYNTHETIC_ANNOTATIONS + " bytes each");
+        assertEquals(SYNTHETIC_ANNOTATIONS, table.size());
+        assertTrue("Columns should take a fraction of the objects", columns < objects / 4);
+    }
+
+    /**
+     * Every string is a separate instance, as after unmarshalling.
+     */
+    private static AnnotationSet syntheticAnnotationSet(int annotations) {
+        AnnotationSet annotationSet = new AnnotationSet();
+        for (int i = 0; i < annotations; i++) {
+            Annotation annotation = new Annotation();
+            annotation.setType(new String(i % 10 == 0 ? "Person" : "Token"));
+            annotation.setStartNode(i * 9L);
+            annotation.setEndNode(i * 9L + 8);
+            annotation.getFeature().add(feature("kind", "word"));
+            annotation.getFeature().add(feature("orth", "upperInitial"));
+            annotationSet.getAnnotation().add(annotation);
+        }
+        return annotationSet;
+    }
+
+    private static Feature feature(String name, String value) {
+        Feature feature = new Feature();
+        feature.setName(new String(name));
+        feature.setValue(new String(value));
+        return feature;
+    }
+
+    private static List<String> describe(AnnotationSet annotationSet) {
+        List<String> described = new ArrayList<>();
+        for (Annotation annotation : annotationSet.getAnnotation()) {
+            StringBuilder features = new StringBuilder();
+            for (Feature feature : annotation.getFeature()) {
+                features.append(' ').append(feature.getName()).append('=').append(feature.getValue());
+            }
+            described.add(annotation.getType() + " " + annotation.getStartNode() + "-" + annotation.getEndNode() + features);
+        }
+        return described;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,13 +1,9 @@
 package net.myrts.gate;
 
-import gate.Annotation;
-import gate.FeatureMap;
-
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
-import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -19,57 +15,137 @@ import static org.junit.Assert.fail;
  *         Time: 5:58 PM
  */
 public class Asserts {
+
+    private static final ThreadLocal<WeakReference<AnnotationIndex>> LAST_INDEX =
+            ThreadLocal.withInitial(() -> new WeakReference<AnnotationIndex>(null));
+
     public static void assertAnnotation(List<ContentAnnotation> annotations, String annotationType, String matchedValue, Long startPosition) {
-        boolean matched = false;
-        for (ContentAnnotation contentAnnotation : annotations) {
-            Annotation annotation = contentAnnotation.getAnnotation();
-            if (matchedValue.equals(contentAnnotation.getMarkedText())
-                    && Objects.equals(startPosition, annotation.getStartNode().getOffset())) {
-                assertEquals("Start position should match for " + contentAnnotation, startPosition, annotation.getStartNode().getOffset());
-                assertEquals("End position should match for " + contentAnnotation, Long.valueOf(startPosition + matchedValue.length()), annotation.getEndNode().getOffset());
-                matched = true;
+        indexOf(annotations).assertAnnotation(annotationType, matchedValue, startPosition);
+    }
+
+    public static void assertAnnotation(List<ContentAnnotation> annotations, String annotationType, String annotationSubType, String matchedValue, Long startPosition) {
+        indexOf(annotations).assertAnnotation(annotationType, annotationSubType, matchedValue, startPosition);
+    }
+  
+    public static void assertAnnotation(List<ContentAnnotation> annotations, String annotationType, String annotationSubType, String annotationMinorType,  String matchedValue, Long startPosition) {
+        indexOf(annotations).assertAnnotation(annotationType, annotationSubType, annotationMinorType, matchedValue, startPosition);
+    }
+
+    /**
+     * Every annotation of the inner type lies inside an annotation of the
+     * outer type, for example every Person inside a Sentence.
+     */
+    public static void assertContainedIn(gate.AnnotationSet annotationSet, String innerType, String outerType) {
+        assertContainedIn(spans(annotationSet, innerType), IntervalIndex.of(annotationSet, outerType), innerType, outerType);
+    }
+
+    public static void assertContainedIn(document.AnnotationSet annotationSet, String innerType, String outerType) {
+        assertContainedIn(spans(annotationSet, innerType), IntervalIndex.of(annotationSet, outerType), innerType, outerType);
+    }
+
+    /**
+     * No annotation of the type shares a character with an annotation of the
+     * other type, for example no Location overlaps a Person.
+     */
+    public static void assertNoOverlap(gate.AnnotationSet annotationSet, String annotationType, String otherType) {
+        assertNoOverlap(spans(annotationSet, annotationType), IntervalIndex.of(annotationSet, otherType), annotationType, otherType);
+    }
+
+    public static void assertNoOverlap(document.AnnotationSet annotationSet, String annotationType, String otherType) {
+        assertNoOverlap(spans(annotationSet, annotationType), IntervalIndex.of(annotationSet, otherType), annotationType, otherType);
+    }
+
+    /**
+     * Every annotation of the type has an annotation of the other type with
+     * the same span.
+     */
+    public static void assertCoextensive(gate.AnnotationSet annotationSet, String annotationType, String otherType) {
+        assertCoextensive(spans(annotationSet, annotationType), IntervalIndex.of(annotationSet, otherType), annotationType, otherType);
+    }
+
+    public static void assertCoextensive(document.AnnotationSet annotationSet, String annotationType, String otherType) {
+        assertCoextensive(spans(annotationSet, annotationType), IntervalIndex.of(annotationSet, otherType), annotationType, otherType);
+    }
+
+    private static void assertContainedIn(long[] spans, IntervalIndex<?> outer, String innerType, String outerType) {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < spans.length; i += 2) {
+            if (!outer.anyContaining(spans[i], spans[i + 1])) {
+                failed.add(spans[i] + "-" + spans[i + 1]);
             }
         }
-        if (!matched) {
-            fail("Failed to match by type '" + annotationType + "' expected value '" + matchedValue + "' start offset=" + startPosition);
+        assertSpans(failed, spans.length / 2, innerType, "not inside a " + outerType);
+    }
+
+    private static void assertNoOverlap(long[] spans, IntervalIndex<?> other, String annotationType, String otherType) {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < spans.length; i += 2) {
+            if (!other.overlapping(spans[i], spans[i + 1]).isEmpty()) {
+                failed.add(spans[i] + "-" + spans[i + 1]);
+            }
         }
+        assertSpans(failed, spans.length / 2, annotationType, "overlapping a " + otherType);
     }
 
-    public static void assertAnnotation(List<ContentAnnotation> annotations, String annotationType, String annotationSubType, String matchedValue, Long startPosition) {
-        boolean matched = false;
-        for (ContentAnnotation contentAnnotation : annotations) {
-            Annotation annotation = contentAnnotation.getAnnotation();
-            FeatureMap featureMap = annotation.getFeatures();
-            if (matchedValue.equals(contentAnnotation.getMarkedText())
-                    && Objects.equals(annotationSubType, featureMap.get("majorType"))
-                    && Objects.equals(startPosition, annotation.getStartNode().getOffset())) {
-                assertEquals("Start position should match for " + contentAnnotation, startPosition, annotation.getStartNode().getOffset());
-                assertEquals("End position should match for " + contentAnnotation, Long.valueOf(startPosition + matchedValue.length()), annotation.getEndNode().getOffset());
-                matched = true;
+    private static void assertCoextensive(long[] spans, IntervalIndex<?> other, String annotationType, String otherType) {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < spans.length; i += 2) {
+            if (other.coextensive(spans[i], spans[i + 1]).isEmpty()) {
+                failed.add(spans[i] + "-" + spans[i + 1]);
             }
         }
-        if (!matched) {
-            fail("Failed to match by type '" + annotationType + "' expected value '" + matchedValue + "' start offset=" + startPosition);
+        assertSpans(failed, spans.length / 2, annotationType, "without a coextensive " + otherType);
+    }
+
+    private static void assertSpans(List<String> failed, int total, String annotationType, String problem) {
+        if (!failed.isEmpty()) {
+            fail(failed.size() + " of " + total + " " + annotationType + " annotations are " + problem + ": "
+                    + failed.subList(0, Math.min(10, failed.size())) + (failed.size() > 10 ? "..." : ""));
         }
     }
-  
-    public static void assertAnnotation(List<ContentAnnotation> annotations, String annotationType, String annotationSubType, String annotationMinorType,  String matchedValue, Long startPosition) {
-        boolean matched = false;
-        for (ContentAnnotation contentAnnotation : annotations) {
-            Annotation annotation = contentAnnotation.getAnnotation();
-            FeatureMap featureMap = annotation.getFeatures();
-            if (matchedValue.equals(contentAnnotation.getMarkedText())
-                    && Objects.equals(annotationSubType, featureMap.get("majorType"))
-                    && Objects.equals(annotationMinorType, featureMap.get("minorType"))
-                    && Objects.equals(startPosition, annotation.getStartNode().getOffset())) {
-                assertEquals("Start position should match for " + contentAnnotation, startPosition, annotation.getStartNode().getOffset());
-                assertEquals("End position should match for " + contentAnnotation, Long.valueOf(startPosition + matchedValue.length()), annotation.getEndNode().getOffset());
-                matched = true;
+
+    /**
+     * Start and end offsets of the annotations of the type, one pair after the other.
+     */
+    private static long[] spans(gate.AnnotationSet annotationSet, String annotationType) {
+        gate.AnnotationSet annotations = annotationSet.get(annotationType);
+        long[] spans = new long[annotations.size() * 2];
+        int i = 0;
+        for (gate.Annotation annotation : annotations) {
+            spans[i++] = annotation.getStartNode().getOffset();
+            spans[i++] = annotation.getEndNode().getOffset();
+        }
+        return spans;
+    }
+
+    private static long[] spans(document.AnnotationSet annotationSet, String annotationType) {
+        List<document.Annotation> annotations = new ArrayList<>();
+        for (document.Annotation annotation : annotationSet.getAnnotation()) {
+            if (annotationType.equals(annotation.getType())) {
+                annotations.add(annotation);
             }
         }
-        if (!matched) {
-            fail("Failed to match by type '" + annotationType + "' expected value '" + matchedValue + "' start offset=" + startPosition);
+        long[] spans = new long[annotations.size() * 2];
+        int i = 0;
+        for (document.Annotation annotation : annotations) {
+            spans[i++] = annotation.getStartNode();
+            spans[i++] = annotation.getEndNode();
+        }
+        return spans;
+    }
+
+    /**
+     * Index of the list, reused while consecutive assertions of the thread run against the same list, see
+     * {@link AnnotationIndex#isIndexOf}. Only weakly held, so the list and its document can be collected once the
+     * test is done with them.
+     */
+    static AnnotationIndex indexOf(List<ContentAnnotation> annotations) {
+        AnnotationIndex index = LAST_INDEX.get().get();
+        if (index == null || !index.isIndexOf(annotations)) {
+            index = AnnotationIndex.of(annotations);
+            LAST_INDEX.set(new WeakReference<>(index));
         }
+        return index;
     }
 
     static String generateAsserts(List<ContentAnnotation> contentAnnotations){
@@ -112,12 +188,12 @@ public class Asserts {
     }
 
     private static String convertToString(List<String> annotations){
-        String str = "";
+        StringBuilder str = new StringBuilder();
         for (String annotation : annotations) {
-            str = str + annotation;
+            str.append(annotation);
         }
 
-        return str;
+        return str.toString();
     }
 
     
@@ -11,26 +11,60 @@ import gate.Annotation;
  */
 public class ContentAnnotation {
     
-    private final String markedText;
     private final Annotation annotation;
+    private final String content;
+    private final int markedStart;
+    private final int markedEnd;
 
     public ContentAnnotation(Annotation annotation, String markedText) {
+        this(annotation, markedText, 0, markedText.length());
+    }
+
+    /**
+     * The marked text is the region of the content, it is not copied until
+     * {@link #getMarkedText()} is called.
+     */
+    public ContentAnnotation(Annotation annotation, String content, int markedStart, int markedEnd) {
         this.annotation = annotation;
-        this.markedText = markedText;
+        this.content = content;
+        this.markedStart = markedStart;
+        this.markedEnd = markedEnd;
     }
 
     public Annotation getAnnotation() {
         return annotation;
     }
 
+    /**
+     * Copy of the marked text, prefer {@link #getMarkedTextRegion()} and
+     * {@link #isMarkedText(CharSequence)} where a copy is not needed.
+     */
     public String getMarkedText() {
-        return markedText;
+        return content.substring(markedStart, markedEnd);
+    }
+
+    /**
+     * View of the marked text in the shared content.
+     */
+    public TextRegion getMarkedTextRegion() {
+        return new TextRegion(content, markedStart, markedEnd);
+    }
+
+    /**
+     * Whether the annotation marks the text, compared in place.
+     */
+    public boolean isMarkedText(CharSequence text) {
+        if (text instanceof String) {
+            String string = (String) text;
+            return string.length() == markedEnd - markedStart && content.regionMatches(markedStart, string, 0, string.length());
+        }
+        return getMarkedTextRegion().contentEquals(text);
     }
 
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("ContentAnnotation{");
-        sb.append("markedText='").append(markedText).append('\'');
+        sb.append("markedText='").append(content, markedStart, markedEnd).append('\'');
         sb.append(", annotationType=").append(annotation.getType());
         sb.append(", annotationStart=").append(annotation.getStartNode().getOffset());
         sb.append(", annotationEnd=").append(annotation.getEndNode().getOffset());
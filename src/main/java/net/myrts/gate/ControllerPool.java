@@ -0,0 +1,179 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.Resource;
+import gate.creole.ResourceInstantiationException;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bounded pool of controllers duplicated from one loaded application.
+ * Duplicates are created lazily with {@link Factory#duplicate} up to the
+ * pool size, after which {@link #borrow()} waits for a returned controller.
+ * The prototype itself is never handed out.
+ */
+public class ControllerPool {
+    private static final Logger LOG = LoggerFactory.getLogger(ControllerPool.class);
+
+    private final CorpusController prototype;
+    private final int maxSize;
+    private final BlockingQueue<CorpusController> idle;
+    private final List<CorpusController> controllers = new ArrayList<>();
+    private final Set<CorpusController> borrowed = Collections.newSetFromMap(new IdentityHashMap<CorpusController, Boolean>());
+    private final PipelineProfiler profiler;
+
+    public ControllerPool(CorpusController prototype, int maxSize) {
+        this(prototype, maxSize, null);
+    }
+
+    /**
+     * Pool profiling every duplicated controller with the given profiler,
+     * which may be null.
+     */
+    public ControllerPool(CorpusController prototype, int maxSize, PipelineProfiler profiler) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size should be positive, got " + maxSize);
+        }
+        this.prototype = prototype;
+        this.maxSize = maxSize;
+        this.idle = new LinkedBlockingQueue<>(maxSize);
+        this.profiler = profiler;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public PipelineProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Takes an idle controller, duplicating the prototype while the pool is
+     * below its size, otherwise blocks until a controller is returned.
+     */
+    public CorpusController borrow() throws InterruptedException, ResourceInstantiationException {
+        CorpusController controller = idle.poll();
+        if (controller != null) {
+            return lend(controller);
+        }
+        synchronized (controllers) {
+            if (controllers.size() < maxSize) {
+                controller = (CorpusController) Factory.duplicate(prototype);
+                controllers.add(controller);
+                if (profiler != null) {
+                    profiler.attach(controller);
+                }
+                LOG.info("Duplicated controller " + prototype.getName() + ", pool size " + controllers.size() + "/" + maxSize);
+                return lend(controller);
+            }
+        }
+        return lend(idle.take());
+    }
+
+    /**
+     * Returns a borrowed controller to the pool. A controller that does not
+     * belong to the pool or is not currently borrowed is rejected, so it is
+     * never queued twice.
+     */
+    public void release(CorpusController controller) {
+        synchronized (controllers) {
+            if (!borrowed.remove(controller)) {
+                throw new IllegalStateException("Controller " + controller.getName()
+                        + (controllers.contains(controller) ? " is not borrowed" : " does not belong to the pool"));
+            }
+        }
+        controller.setCorpus(null);
+        idle.offer(controller);
+    }
+
+    private CorpusController lend(CorpusController controller) {
+        synchronized (controllers) {
+            borrowed.add(controller);
+        }
+        return controller;
+    }
+
+    /**
+     * Annotate the configured documents with a borrowed controller. When
+     * annotation fails the corpus and its documents are deleted.
+     */
+    public Corpus annotate(CorpusConfig config) throws GateException, InterruptedException {
+        Corpus corpus = config.createCorpus();
+        boolean annotated = false;
+        try {
+            CorpusController controller = borrow();
+            try {
+                controller.setCorpus(corpus);
+                controller.execute();
+            } finally {
+                release(controller);
+            }
+            annotated = true;
+        } finally {
+            if (!annotated) {
+                deleteWithDocuments(corpus);
+            }
+        }
+        if (profiler != null) {
+            for (Document doc : corpus) {
+                profiler.recordRetained(doc);
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Whether the resource is the prototype, a duplicated controller or one
+     * of their processing resources.
+     */
+    public boolean owns(Resource resource) {
+        if (resource == prototype || prototype.getPRs().contains(resource)) {
+            return true;
+        }
+        synchronized (controllers) {
+            for (CorpusController controller : controllers) {
+                if (resource == controller || controller.getPRs().contains(resource)) {
+                    return true;
+                }
+            }
+        }
+        return profiler != null && profiler.isWrapped(resource);
+    }
+
+    private static void deleteWithDocuments(Corpus corpus) {
+        for (Document doc : new ArrayList<>(corpus)) {
+            Factory.deleteResource(doc);
+        }
+        Factory.deleteResource(corpus);
+    }
+
+    /**
+     * Delete every duplicated controller. The prototype is left to its owner.
+     */
+    public void close() {
+        synchronized (controllers) {
+            for (CorpusController controller : controllers) {
+                if (profiler != null) {
+                    profiler.detach(controller);
+                }
+                Factory.deleteResource(controller);
+            }
+            controllers.clear();
+            borrowed.clear();
+            idle.clear();
+        }
+    }
+}
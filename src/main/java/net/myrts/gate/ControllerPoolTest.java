@@ -0,0 +1,155 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.util.GateException;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the pool of duplicated controllers.
+ */
+public class ControllerPoolTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ControllerPoolTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int DOCUMENTS_PER_THREAD = 4;
+
+    @Test
+    public void shouldBlockWhenPoolIsExhausted() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CorpusController borrowed = pool.borrow();
+            assertNotSame(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), borrowed);
+
+            Future<CorpusController> waiting = executor.submit(pool::borrow);
+            Thread.sleep(200);
+            assertTrue("Second borrow should wait for release", !waiting.isDone());
+
+            pool.release(borrowed);
+            assertSame(borrowed, waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectForeignController() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 2);
+        try {
+            pool.release(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectSecondRelease() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 2);
+        try {
+            CorpusController borrowed = pool.borrow();
+            pool.release(borrowed);
+            try {
+                pool.release(borrowed);
+                fail("Second release should be rejected");
+            } catch (IllegalStateException e) {
+                LOG.info(e.getMessage());
+            }
+            assertSame(borrowed, pool.borrow());
+            assertNotSame(borrowed, pool.borrow());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldDeleteCorpusWhenAnnotationFails() throws Exception {
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 1);
+        CorpusController borrowed = pool.borrow();
+        int loaded = Gate.getCreoleRegister().getLrInstances().size();
+        try {
+            // the exhausted pool makes the interrupted borrow fail
+            Thread.currentThread().interrupt();
+            pool.annotate(CorpusConfig.forCorpusFiles("1.txt"));
+            fail("Interrupted annotation should fail");
+        } catch (InterruptedException e) {
+            assertEquals(loaded, Gate.getCreoleRegister().getLrInstances().size());
+        } finally {
+            Thread.interrupted();
+            pool.release(borrowed);
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldReportThroughputForEachThreadCount() throws Exception {
+        CorpusConfig config = CorpusConfig.forCorpusFiles("1.txt");
+        int expectedAnnotations = -1;
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads++) {
+            ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                // warm up every duplicate before measuring
+                List<Future<Integer>> results = submit(executor, pool, config, threads);
+                for (Future<Integer> result : results) {
+                    result.get();
+                }
+
+                long start = System.nanoTime();
+                results = submit(executor, pool, config, threads * DOCUMENTS_PER_THREAD);
+                for (Future<Integer> result : results) {
+                    int annotations = result.get();
+                    if (expectedAnnotations < 0) {
+                        expectedAnnotations = annotations;
+                    }
+                    assertEquals("Every duplicate should produce the same annotations", expectedAnnotations, annotations);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                LOG.info("Pool throughput with " + threads + " threads: "
+                        + String.format("%.2f", threads * DOCUMENTS_PER_THREAD / seconds) + " docs/sec");
+            } finally {
+                executor.shutdown();
+                pool.close();
+            }
+        }
+    }
+
+    private List<Future<Integer>> submit(ExecutorService executor, ControllerPool pool, CorpusConfig config, int documents) {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            results.add(executor.submit(() -> annotate(pool, config)));
+        }
+        return results;
+    }
+
+    private int annotate(ControllerPool pool, CorpusConfig config) throws GateException, InterruptedException {
+        Corpus corpus = pool.annotate(config);
+        Document doc = corpus.get(0);
+        int annotations = doc.getAnnotations().size();
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+        return annotations;
+    }
+}
@@ -0,0 +1,108 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.creole.ResourceInstantiationException;
+import gate.util.Out;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-call description of the documents to annotate and how to load them.
+ * Replaces the global {@code gate.corpus.files} system property so several
+ * annotation runs can be configured at the same time.
+ */
+public class CorpusConfig {
+
+    private static final String CORPUS_DIR = "/src/main/resources/corpus/";
+
+    private final List<URL> documentUrls;
+    private final boolean markupAware;
+    private final boolean preserveOriginalContent;
+    private final boolean collectRepositioningInfo;
+
+    public CorpusConfig(List<URL> documentUrls) {
+        this(documentUrls, false, true, true);
+    }
+
+    public CorpusConfig(List<URL> documentUrls, boolean markupAware, boolean preserveOriginalContent, boolean collectRepositioningInfo) {
+        this.documentUrls = Collections.unmodifiableList(new ArrayList<>(documentUrls));
+        this.markupAware = markupAware;
+        this.preserveOriginalContent = preserveOriginalContent;
+        this.collectRepositioningInfo = collectRepositioningInfo;
+    }
+
+    /**
+     * Config for a comma-separated list of file names from the project corpus directory.
+     */
+    public static CorpusConfig forCorpusFiles(String fileNames) throws MalformedURLException {
+        String workDir = System.getProperty("user.dir");
+        List<URL> urls = new ArrayList<>();
+        for (String fileName : fileNames.split(",")) {
+            urls.add(new File(workDir + CORPUS_DIR + fileName).toURI().toURL());
+        }
+        return new CorpusConfig(urls);
+    }
+
+    public List<URL> getDocumentUrls() {
+        return documentUrls;
+    }
+
+    public boolean isMarkupAware() {
+        return markupAware;
+    }
+
+    public boolean isPreserveOriginalContent() {
+        return preserveOriginalContent;
+    }
+
+    public boolean isCollectRepositioningInfo() {
+        return collectRepositioningInfo;
+    }
+
+    /**
+     * Create a GATE corpus holding a document for each configured URL.
+     */
+    public Corpus createCorpus() throws ResourceInstantiationException {
+        Corpus corpus = Factory.newCorpus("StandAloneAnnie corpus");
+        for (URL url : documentUrls) {
+            corpus.add(createDocument(url));
+        }
+        return corpus;
+    }
+
+    /**
+     * Lazy source of the configured documents, see {@link StreamingCorpusRunner}.
+     */
+    public DocumentSource documentSource() {
+        return DocumentSource.forUrls(documentUrls.iterator(), this);
+    }
+
+    public Document createDocument(URL url) throws ResourceInstantiationException {
+        FeatureMap params = Factory.newFeatureMap();
+        params.put("sourceUrl", url);
+        params.put("markupAware", markupAware);
+        params.put("preserveOriginalContent", preserveOriginalContent);
+        params.put("collectRepositioningInfo", collectRepositioningInfo);
+        Out.prln("Creating doc for " + url);
+        return (Document) Factory.createResource("gate.corpora.DocumentImpl", params);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("CorpusConfig{");
+        sb.append("documentUrls=").append(documentUrls);
+        sb.append(", markupAware=").append(markupAware);
+        sb.append(", preserveOriginalContent=").append(preserveOriginalContent);
+        sb.append(", collectRepositioningInfo=").append(collectRepositioningInfo);
+        sb.append('}');
+        return sb.toString();
+    }
+}
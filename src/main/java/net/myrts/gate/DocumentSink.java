@@ -0,0 +1,13 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.util.GateException;
+
+/**
+ * Receives every annotated document of a streaming run. The document is
+ * unloaded when the call returns, so results should be copied out of it.
+ */
+public interface DocumentSink {
+
+    void accept(Document doc) throws GateException;
+}
@@ -0,0 +1,27 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.creole.ResourceInstantiationException;
+
+import java.net.URL;
+import java.util.Iterator;
+
+/**
+ * Lazy supply of documents, each one is created only when it is asked for.
+ */
+public interface DocumentSource {
+
+    /**
+     * Create the next document, null when the source is exhausted.
+     */
+    Document next() throws ResourceInstantiationException;
+
+    /**
+     * Source creating a document for each URL, loaded as the config says.
+     * The URLs are read from the iterator one at a time, so it may be backed
+     * by a directory listing or a file of any length.
+     */
+    static DocumentSource forUrls(Iterator<URL> urls, CorpusConfig config) {
+        return () -> urls.hasNext() ? config.createDocument(urls.next()) : null;
+    }
+}
@@ -0,0 +1,104 @@
+package net.myrts.gate;
+
+import document.Feature;
+import document.GateDocument;
+import document.GateDocumentFeatures;
+import document.Node;
+import document.StringInterner;
+import document.TextWithNodes;
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.FeatureMap;
+import gate.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Converts a GATE document to the {@code document} model in memory, without
+ * writing and unmarshalling GATE XML. Annotation types, feature names and
+ * feature values go through a {@link StringInterner}, so a corpus converted
+ * with one interner holds each distinct string once. Document features are
+ * not interned: they hold per-document strings such as the original content,
+ * which a corpus-wide pool would keep alive.
+ */
+public final class GateDocumentConverter {
+
+    private GateDocumentConverter() {
+    }
+
+    public static GateDocument toGateDocument(Document doc, StringInterner interner) {
+        GateDocument gateDoc = new GateDocument();
+        GateDocumentFeatures documentFeatures = new GateDocumentFeatures();
+        documentFeatures.getFeature().addAll(toFeatures(doc.getFeatures(), null));
+        gateDoc.setGateDocumentFeatures(documentFeatures);
+
+        TreeSet<Long> offsets = new TreeSet<>();
+        gateDoc.getAnnotationSet().add(toAnnotationSet(null, doc.getAnnotations(), interner, offsets));
+        Map<String, AnnotationSet> namedAnnotationSets = doc.getNamedAnnotationSets();
+        if (namedAnnotationSets != null) {
+            for (Map.Entry<String, AnnotationSet> entry : namedAnnotationSets.entrySet()) {
+                gateDoc.getAnnotationSet().add(toAnnotationSet(entry.getKey(), entry.getValue(), interner, offsets));
+            }
+        }
+        gateDoc.setTextWithNodes(toTextWithNodes(doc.getContent().toString(), offsets));
+        return gateDoc;
+    }
+
+    /**
+     * Features in their string form, as written to GATE XML, interned unless
+     * the interner is {@code null}.
+     */
+    public static List<Feature> toFeatures(FeatureMap featureMap, StringInterner interner) {
+        List<Feature> features = new ArrayList<>(featureMap.size());
+        for (Map.Entry<Object, Object> entry : featureMap.entrySet()) {
+            Feature feature = new Feature();
+            feature.setName(intern(interner, String.valueOf(entry.getKey())));
+            feature.setValue(entry.getValue() == null ? null : intern(interner, String.valueOf(entry.getValue())));
+            features.add(feature);
+        }
+        return features;
+    }
+
+    private static String intern(StringInterner interner, String string) {
+        return interner == null ? string : interner.intern(string);
+    }
+
+    private static document.AnnotationSet toAnnotationSet(String name, AnnotationSet annotationSet, StringInterner interner,
+                                                          TreeSet<Long> offsets) {
+        document.AnnotationSet converted = new document.AnnotationSet();
+        converted.setName(name);
+        for (Annotation annotation : Utils.inDocumentOrder(annotationSet)) {
+            document.Annotation convertedAnnotation = new document.Annotation();
+            convertedAnnotation.setType(interner.intern(annotation.getType()));
+            convertedAnnotation.setStartNode(annotation.getStartNode().getOffset());
+            convertedAnnotation.setEndNode(annotation.getEndNode().getOffset());
+            convertedAnnotation.getFeature().addAll(toFeatures(annotation.getFeatures(), interner));
+            converted.getAnnotation().add(convertedAnnotation);
+            offsets.add(convertedAnnotation.getStartNode());
+            offsets.add(convertedAnnotation.getEndNode());
+        }
+        return converted;
+    }
+
+    private static TextWithNodes toTextWithNodes(String content, TreeSet<Long> offsets) {
+        TextWithNodes textWithNodes = new TextWithNodes();
+        int position = 0;
+        for (Long offset : offsets) {
+            if (offset > position) {
+                textWithNodes.getContent().add(content.substring(position, offset.intValue()));
+            }
+            Node node = new Node();
+            node.setId(offset);
+            textWithNodes.getContent().add(node);
+            position = offset.intValue();
+        }
+        if (position < content.length()) {
+            textWithNodes.getContent().add(content.substring(position));
+        }
+        return textWithNodes;
+    }
+}
@@ -0,0 +1,187 @@
+package net.myrts.gate;
+
+import document.Annotation;
+import document.AnnotationSet;
+import document.GateDocument;
+import document.GateDocumentHandler;
+import document.GateDocumentReader;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the streaming reader of the document package.
+ */
+public class GateDocumentReaderTest {
+    private static final Logger LOG = LoggerFactory.getLogger(GateDocumentReaderTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int SYNTHETIC_ANNOTATIONS = 300000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldStreamSameAnnotationsAsJaxb() throws Exception {
+        // given
+        File file = saveAnnotatedDocument("1.txt");
+        GateDocument gateDoc = (GateDocument) JAXBContext.newInstance(GateDocument.class).createUnmarshaller().unmarshal(file);
+        Map<String, Integer> expected = new HashMap<>();
+        for (AnnotationSet annotationSet : gateDoc.getAnnotationSet()) {
+            for (Annotation annotation : annotationSet.getAnnotation()) {
+                expected.merge(annotationSet.getName() + "/" + annotation.getType(), 1, Integer::sum);
+            }
+        }
+
+        // when
+        Map<String, Integer> streamed = new HashMap<>();
+        new GateDocumentReader().read(file, new GateDocumentHandler() {
+            @Override
+            public void annotation(AnnotationSet annotationSet, Annotation annotation) {
+                streamed.merge(annotationSet.getName() + "/" + annotation.getType(), 1, Integer::sum);
+            }
+        });
+
+        // then
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void shouldFilterBySetNameAndType() throws Exception {
+        File file = saveAnnotatedDocument("1.txt");
+        List<Annotation> firstPersons = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+
+        new GateDocumentReader()
+                .withAnnotationSets("testNE")
+                .withAnnotationTypes("FirstPerson")
+                .read(file, new GateDocumentHandler() {
+                    @Override
+                    public void text(String chunk) {
+                        text.append(chunk);
+                    }
+
+                    @Override
+                    public void annotation(AnnotationSet annotationSet, Annotation annotation) {
+                        assertEquals("testNE", annotationSet.getName());
+                        firstPersons.add(annotation);
+                    }
+                });
+
+        assertEquals(3, firstPersons.size());
+        assertEquals("Salmon", text.substring((int) firstPersons.get(0).getStartNode(), (int) firstPersons.get(0).getEndNode()));
+        assertEquals(115L, firstPersons.get(0).getStartNode());
+    }
+
+    @Test
+    public void memoryShouldStayFlatWhileStreaming() throws Exception {
+        File file = writeSyntheticDocument(SYNTHETIC_ANNOTATIONS);
+        long baseline = usedMemory();
+
+        long[] streamingPeak = new long[1];
+        int[] persons = new int[1];
+        new GateDocumentReader().withAnnotationTypes("Person").read(file, new GateDocumentHandler() {
+            @Override
+            public void annotation(AnnotationSet annotationSet, Annotation annotation) {
+                if (++persons[0] == SYNTHETIC_ANNOTATIONS / 20) {
+                    streamingPeak[0] = usedMemory() - baseline;
+                }
+            }
+        });
+
+        GateDocument gateDoc = (GateDocument) JAXBContext.newInstance(GateDocument.class).createUnmarshaller().unmarshal(file);
+        long jaxbRetained = usedMemory() - baseline;
+
+        assertEquals(SYNTHETIC_ANNOTATIONS / 10, persons[0]);
+        assertEquals(SYNTHETIC_ANNOTATIONS, gateDoc.getAnnotationSet().get(0).getAnnotation().size());
+        LOG.info("Heap over baseline for " + file.length() + " bytes: streaming " + streamingPeak[0] / 1024
+                + " KB, JAXB tree " + jaxbRetained / 1024 + " KB");
+        assertTrue("Streaming should not hold the document tree", streamingPeak[0] < jaxbRetained / 4);
+    }
+
+    private File saveAnnotatedDocument(String fileName) throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles(fileName));
+        Document doc = corpus.get(0);
+        File file = folder.newFile(fileName + ".xml");
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            out.write(doc.toXml());
+        }
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+        return file;
+    }
+
+    private File writeSyntheticDocument(int annotations) throws Exception {
+        File file = folder.newFile("synthetic.xml");
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("GateDocument");
+            writer.writeStartElement("GateDocumentFeatures");
+            writeFeature(writer, "gate.SourceURL", "synthetic");
+            writer.writeEndElement();
+            writer.writeStartElement("TextWithNodes");
+            writer.writeCharacters("Henry Griswold");
+            writer.writeEndElement();
+            writer.writeStartElement("AnnotationSet");
+            for (int i = 0; i < annotations; i++) {
+                writer.writeStartElement("Annotation");
+                writer.writeAttribute("Type", i % 10 == 0 ? "Person" : "Token");
+                writer.writeAttribute("StartNode", "0");
+                writer.writeAttribute("EndNode", "5");
+                writeFeature(writer, "kind", "word");
+                writeFeature(writer, "orth", "upperInitial");
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        }
+        return file;
+    }
+
+    private void writeFeature(XMLStreamWriter writer, String name, String value) throws Exception {
+        writer.writeStartElement("Feature");
+        writer.writeStartElement("Name");
+        writer.writeCharacters(name);
+        writer.writeEndElement();
+        writer.writeStartElement("Value");
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
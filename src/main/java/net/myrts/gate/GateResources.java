@@ -0,0 +1,276 @@
+package net.myrts.gate;
+
+import gate.Controller;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Resource;
+import gate.creole.ResourceData;
+import gate.event.CreoleEvent;
+import gate.event.CreoleListener;
+import gate.util.GateException;
+import gate.util.Out;
+import org.junit.rules.ExternalResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test rule releasing every GATE resource created during a test.
+ * <pre>
+ *    &#64;Rule
+ *    public GateResources resources = new GateResources();
+ * </pre>
+ * Resources loaded while the test runs, on any thread, are deleted with
+ * {@link Factory#deleteResource} afterwards, controllers first and then the
+ * others in reverse order of creation. Hidden resources, which belong to
+ * the resource that created them, the applications shared through
+ * {@link GateRuntime} with their processing resources, and resources passed
+ * to {@link #keep} are left loaded.
+ * <p>
+ * The listener sees the whole CREOLE register, so the rule cannot tell the
+ * resources of one test from those of another running at the same time and
+ * requires tests to run one at a time: starting it while the rule of another
+ * test is active fails.
+ * <p>
+ * When the JVM exits, resources still registered with the CREOLE register
+ * are reported as leaks with their counts and estimated size.
+ */
+public class GateResources extends ExternalResource implements CreoleListener {
+    private static final Logger LOG = LoggerFactory.getLogger(GateResources.class);
+
+    private static final AtomicBoolean LEAK_REPORT = new AtomicBoolean();
+
+    private static final AtomicReference<GateResources> ACTIVE = new AtomicReference<>();
+
+    private final List<Resource> created = new ArrayList<>();
+    private final Set<Resource> unloaded = Collections.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+    private final Set<Resource> kept = Collections.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+
+    @Override
+    protected void before() throws GateException {
+        GateRuntime.init();
+        if (LEAK_REPORT.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                List<Leak> leaks = findLeaks();
+                if (!leaks.isEmpty()) {
+                    Out.prln(leakReport(leaks));
+                }
+            }));
+        }
+        if (!ACTIVE.compareAndSet(null, this)) {
+            throw new IllegalStateException("GATE resources of another test are being tracked, tests should run one at a time");
+        }
+        Gate.getCreoleRegister().addCreoleListener(this);
+    }
+
+    @Override
+    protected void after() {
+        try {
+            int released = release();
+            if (released > 0) {
+                LOG.debug("Released " + released + " GATE resources");
+            }
+        } finally {
+            Gate.getCreoleRegister().removeCreoleListener(this);
+            ACTIVE.compareAndSet(this, null);
+        }
+    }
+
+    /**
+     * Leave the resource loaded after the test.
+     */
+    public <R extends Resource> R keep(R resource) {
+        synchronized (created) {
+            kept.add(resource);
+        }
+        return resource;
+    }
+
+    /**
+     * Resources created so far that are still loaded.
+     */
+    public List<Resource> getCreated() {
+        synchronized (created) {
+            List<Resource> loaded = new ArrayList<>();
+            for (Resource resource : created) {
+                if (!unloaded.contains(resource)) {
+                    loaded.add(resource);
+                }
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Delete the tracked resources, returns how many were deleted.
+     */
+    public int release() {
+        List<Resource> candidates = getCreated();
+        Collections.reverse(candidates);
+        List<Resource> ordered = new ArrayList<>();
+        for (Resource resource : candidates) {
+            if (resource instanceof Controller) {
+                ordered.add(resource);
+            }
+        }
+        for (Resource resource : candidates) {
+            if (!(resource instanceof Controller)) {
+                ordered.add(resource);
+            }
+        }
+        int released = 0;
+        for (Resource resource : ordered) {
+            boolean skip;
+            synchronized (created) {
+                skip = unloaded.contains(resource) || kept.contains(resource);
+            }
+            if (skip || isHidden(resource) || GateRuntime.isShared(resource)) {
+                continue;
+            }
+            Factory.deleteResource(resource);
+            released++;
+        }
+        synchronized (created) {
+            created.clear();
+            unloaded.clear();
+        }
+        return released;
+    }
+
+    /**
+     * Resources registered with the CREOLE register that are neither
+     * hidden nor shared through {@link GateRuntime}, by class.
+     */
+    public static List<Leak> findLeaks() {
+        RetainedSizeEstimator estimator = new RetainedSizeEstimator();
+        Map<String, Leak> leaks = new TreeMap<>();
+        for (ResourceData data : new ArrayList<>(Gate.getCreoleRegister().values())) {
+            for (Resource resource : new ArrayList<>(data.getInstantiations())) {
+                if (isHidden(resource) || GateRuntime.isShared(resource)) {
+                    continue;
+                }
+                String type = resource.getClass().getName();
+                Leak leak = leaks.get(type);
+                if (leak == null) {
+                    leak = new Leak(type);
+                    leaks.put(type, leak);
+                }
+                leak.add(resource.getName(), estimateSize(resource, estimator));
+            }
+        }
+        return new ArrayList<>(leaks.values());
+    }
+
+    public static String leakReport(List<Leak> leaks) {
+        StringBuilder sb = new StringBuilder("GATE resources still loaded:");
+        for (Leak leak : leaks) {
+            sb.append("\n  ").append(leak);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Documents are estimated from their content and annotation sets, other
+     * resources are counted without a size.
+     */
+    private static long estimateSize(Resource resource, RetainedSizeEstimator estimator) {
+        if (!(resource instanceof Document)) {
+            return 0;
+        }
+        Document doc = (Document) resource;
+        long bytes = 2L * doc.getContent().size();
+        for (RetainedSizeEstimator.Footprint footprint : estimator.estimate(doc)) {
+            bytes += footprint.getBytes();
+        }
+        return bytes;
+    }
+
+    private static boolean isHidden(Resource resource) {
+        return resource.getFeatures() != null && Gate.getHiddenAttribute(resource.getFeatures());
+    }
+
+    @Override
+    public void resourceLoaded(CreoleEvent e) {
+        synchronized (created) {
+            created.add(e.getResource());
+        }
+    }
+
+    @Override
+    public void resourceUnloaded(CreoleEvent e) {
+        synchronized (created) {
+            unloaded.add(e.getResource());
+        }
+    }
+
+    @Override
+    public void datastoreOpened(CreoleEvent e) {
+    }
+
+    @Override
+    public void datastoreCreated(CreoleEvent e) {
+    }
+
+    @Override
+    public void datastoreClosed(CreoleEvent e) {
+    }
+
+    @Override
+    public void resourceRenamed(Resource resource, String oldName, String newName) {
+    }
+
+    /**
+     * Loaded resources of one class.
+     */
+    public static final class Leak {
+        private static final int NAMES = 5;
+
+        private final String type;
+        private final List<String> names = new ArrayList<>();
+        private int count;
+        private long bytes;
+
+        Leak(String type) {
+            this.type = type;
+        }
+
+        private void add(String name, long size) {
+            if (names.size() < NAMES) {
+                names.add(name);
+            }
+            count++;
+            bytes += size;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Estimated retained bytes, 0 when the type is not estimated.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return type + ": " + count + (bytes > 0 ? ", ~" + bytes / 1024 + " KB" : "") + " " + names
+                    + (count > names.size() ? "..." : "");
+        }
+    }
+}
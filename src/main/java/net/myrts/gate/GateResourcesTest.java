@@ -0,0 +1,115 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Resource;
+import gate.creole.ResourceData;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the managed GATE resource rule.
+ */
+public class GateResourcesTest {
+    private static final Logger LOG = LoggerFactory.getLogger(GateResourcesTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    @Test
+    public void shouldReleaseResourcesCreatedDuringTest() throws Throwable {
+        // given
+        ControllerPool pool = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME);
+        GateResources resources = new GateResources();
+        resources.before();
+
+        // when
+        Document doc = Factory.newDocument("Hepburn met Griswold");
+        Corpus annotated = pool.annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document annotatedDoc = annotated.get(0);
+        CorpusController controller = GateRuntime.loadController(PLUGIN_NAME, PROJECT_FILE_NAME);
+        Document kept = resources.keep(Factory.newDocument("Louisville, Kentucky"));
+        resources.after();
+
+        // then
+        assertFalse(isLoaded(doc));
+        assertFalse(isLoaded(annotated));
+        assertFalse(isLoaded(annotatedDoc));
+        assertFalse(isLoaded(controller));
+        assertFalse(isLoaded(controller.getPRs().iterator().next()));
+        assertTrue("Kept resources stay loaded", isLoaded(kept));
+        assertTrue("Shared application stays loaded", isLoaded(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME)));
+        Corpus again = pool.annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        assertTrue("Pooled controllers stay usable", again.get(0).getAnnotations().size() > 0);
+        Factory.deleteResource(again.get(0));
+        Factory.deleteResource(again);
+        Factory.deleteResource(kept);
+    }
+
+    @Test
+    public void shouldRejectConcurrentTests() throws Throwable {
+        GateResources first = new GateResources();
+        GateResources second = new GateResources();
+        first.before();
+        try {
+            second.before();
+            fail("Second rule should not start while the first is active");
+        } catch (IllegalStateException e) {
+            LOG.info(e.getMessage());
+        } finally {
+            first.after();
+        }
+        second.before();
+        second.after();
+    }
+
+    @Test
+    public void shouldReportLoadedDocumentsAsLeaks() throws Exception {
+        GateRuntime.init();
+        int before = leakedDocuments();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append("Griswold ");
+        }
+        Document leaked = Factory.newDocument(text.toString());
+        leaked.getAnnotations().add(0L, 8L, "Person", Factory.newFeatureMap());
+
+        List<GateResources.Leak> leaks = GateResources.findLeaks();
+
+        assertEquals(before + 1, leakedDocuments());
+        for (GateResources.Leak leak : leaks) {
+            if (leak.getType().equals(leaked.getClass().getName())) {
+                assertTrue(leak.toString(), leak.getBytes() >= 2L * text.length());
+            }
+        }
+        LOG.info(GateResources.leakReport(leaks));
+        Factory.deleteResource(leaked);
+        assertEquals(before, leakedDocuments());
+    }
+
+    private static int leakedDocuments() {
+        for (GateResources.Leak leak : GateResources.findLeaks()) {
+            if (leak.getType().equals("gate.corpora.DocumentImpl")) {
+                return leak.getCount();
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isLoaded(Resource resource) {
+        ResourceData data = Gate.getCreoleRegister().get(resource.getClass().getName());
+        return data != null && data.getInstantiations().contains(resource);
+    }
+}
@@ -0,0 +1,192 @@
+package net.myrts.gate;
+
+import gate.CorpusController;
+import gate.Gate;
+import gate.Resource;
+import gate.util.GateException;
+import gate.util.Out;
+import gate.util.persistence.PersistenceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared GATE runtime. GATE is initialised once per JVM and every loaded
+ * application is kept in a registry keyed by plugin name and .gapp path,
+ * so tests do not pay plugin, gazetteer and grammar loading again.
+ */
+public final class GateRuntime {
+    private static final Logger LOG = LoggerFactory.getLogger(GateRuntime.class);
+
+    private static final Map<String, CorpusController> CONTROLLERS = new HashMap<>();
+
+    private static final Map<String, ControllerPool> POOLS = new HashMap<>();
+
+    private static final Map<String, AnnotationCache> CACHES = new HashMap<>();
+
+    private static final String CACHE_DIR = System.getProperty("gateunit.cache.dir", "target/annotation-cache");
+
+    private static final long CACHE_MAX_BYTES = Long.getLong("gateunit.cache.maxBytes", 256L * 1024 * 1024);
+
+    private static final String PROFILE_REPORT = System.getProperty("gateunit.profile.report");
+
+    private static final int STREAM_BATCH_SIZE = Integer.getInteger("gateunit.stream.batchSize", 1);
+
+    private static final String INCREMENTAL_DIR = System.getProperty("gateunit.incremental.dir", "target/incremental");
+
+    private GateRuntime() {
+    }
+
+    /**
+     * Initialise the GATE library with the plugins and site config from
+     * the project resources. Subsequent calls do nothing.
+     */
+    public static synchronized void init() throws GateException {
+        if (Gate.isInitialised()) {
+            return;
+        }
+        String workDir = System.getProperty("user.dir");
+        System.setProperty("gate.plugins.home", workDir + "/src/main/resources/gate-home/plugins");
+        System.setProperty("gate.site.config", workDir + "/src/main/resources/gate-home/gate.xml");
+        Out.prln("Initialising GATE...");
+        Gate.init();
+        Out.prln("...GATE initialised");
+    }
+
+    /**
+     * Returns the application saved in the plugin project file, loading it
+     * on the first request only. The returned controller is shared, callers
+     * must not run it from several threads at once.
+     */
+    public static synchronized CorpusController getController(String pluginName, String projectFileName) throws GateException, IOException {
+        String key = getKey(pluginName, projectFileName);
+        CorpusController controller = CONTROLLERS.get(key);
+        if (controller == null) {
+            controller = loadController(pluginName, projectFileName);
+            CONTROLLERS.put(key, controller);
+            LOG.info("Registered controller " + controller.getName() + " for " + key);
+        }
+        return controller;
+    }
+
+    /**
+     * Returns the shared pool of duplicates of the registered application,
+     * sized to the number of available processors. With the system property
+     * {@code gateunit.profile.report} set to a file, the pooled controllers
+     * are profiled and the JSON report is written there when the JVM exits.
+     */
+    public static synchronized ControllerPool getControllerPool(String pluginName, String projectFileName) throws GateException, IOException {
+        String key = getKey(pluginName, projectFileName);
+        ControllerPool pool = POOLS.get(key);
+        if (pool == null) {
+            PipelineProfiler profiler = PROFILE_REPORT == null ? null : newProfiler(new File(PROFILE_REPORT));
+            pool = new ControllerPool(getController(pluginName, projectFileName), Runtime.getRuntime().availableProcessors(), profiler);
+            POOLS.put(key, pool);
+        }
+        return pool;
+    }
+
+    private static PipelineProfiler newProfiler(File report) {
+        PipelineProfiler profiler = new PipelineProfiler();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Out.prln(profiler.report());
+            try {
+                profiler.writeReport(report);
+            } catch (IOException e) {
+                LOG.error("Cannot write pipeline profile " + report, e);
+            }
+        }));
+        return profiler;
+    }
+
+    /**
+     * Returns the shared on-disk result cache of the registered application.
+     * The cache key covers the .gapp and every plugin resource, its hit and
+     * miss counts are reported when the JVM exits.
+     */
+    public static synchronized AnnotationCache getAnnotationCache(String pluginName, String projectFileName) throws GateException, IOException {
+        String key = getKey(pluginName, projectFileName);
+        AnnotationCache cache = CACHES.get(key);
+        if (cache == null) {
+            String pipelineHash = AnnotationCache.hashPipeline(getProjectFile(pluginName, projectFileName), Gate.getPluginsHome());
+            cache = new AnnotationCache(new File(CACHE_DIR), CACHE_MAX_BYTES, pipelineHash);
+            CACHES.put(key, cache);
+            final AnnotationCache reported = cache;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> Out.prln(reported.report())));
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a runner splitting multi-document configurations into one shard
+     * per controller of the shared pool.
+     */
+    public static ParallelCorpusRunner getParallelCorpusRunner(String pluginName, String projectFileName) throws GateException, IOException {
+        ControllerPool pool = getControllerPool(pluginName, projectFileName);
+        return new ParallelCorpusRunner(pool, pool.getMaxSize());
+    }
+
+    /**
+     * Returns a runner streaming documents through the shared pool in batches
+     * of {@code gateunit.stream.batchSize} documents.
+     */
+    public static StreamingCorpusRunner getStreamingCorpusRunner(String pluginName, String projectFileName) throws GateException, IOException {
+        return new StreamingCorpusRunner(getControllerPool(pluginName, projectFileName), STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * Returns an incremental run of the registered application over the
+     * plugins directory, each application keeps its manifest and results in
+     * its own directory under {@code gateunit.incremental.dir}.
+     */
+    public static IncrementalRun getIncrementalRun(String pluginName, String projectFileName) throws GateException, IOException {
+        File directory = new File(INCREMENTAL_DIR, pluginName + "/" + projectFileName);
+        return new IncrementalRun(directory, getProjectFile(pluginName, projectFileName), Gate.getPluginsHome(),
+                getControllerPool(pluginName, projectFileName));
+    }
+
+    /**
+     * Whether the resource is a registered application, a pooled duplicate
+     * or one of their processing resources, which live as long as the JVM.
+     */
+    public static synchronized boolean isShared(Resource resource) {
+        for (CorpusController controller : CONTROLLERS.values()) {
+            if (resource == controller || controller.getPRs().contains(resource)) {
+                return true;
+            }
+        }
+        for (ControllerPool pool : POOLS.values()) {
+            if (pool.owns(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads a new instance of the application saved in the plugin project
+     * file, bypassing the registry.
+     */
+    public static CorpusController loadController(String pluginName, String projectFileName) throws GateException, IOException {
+        init();
+        long start = System.nanoTime();
+        CorpusController controller = (CorpusController) PersistenceManager.loadObjectFromFile(getProjectFile(pluginName, projectFileName));
+        LOG.info("Loaded " + pluginName + "/" + projectFileName + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return controller;
+    }
+
+    private static String getKey(String pluginName, String projectFileName) throws GateException, IOException {
+        init();
+        return pluginName + ':' + getProjectFile(pluginName, projectFileName).getCanonicalPath();
+    }
+
+    public static File getProjectFile(String pluginName, String projectFileName) {
+        File pluginsHome = Gate.getPluginsHome();
+        File plugin = new File(pluginsHome, pluginName);
+        return new File(plugin, projectFileName);
+    }
+}
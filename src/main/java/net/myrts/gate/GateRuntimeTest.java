@@ -0,0 +1,73 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the shared GATE runtime.
+ */
+public class GateRuntimeTest {
+    private static final Logger LOG = LoggerFactory.getLogger(GateRuntimeTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    @Test
+    public void shouldRegisterControllerOnce() throws IOException, GateException {
+        CorpusController first = GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME);
+        CorpusController second = GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void warmStartShouldBeFasterThanColdStart() throws IOException, GateException {
+        // given
+        long coldStart = System.nanoTime();
+        CorpusController coldController = GateRuntime.loadController(PLUGIN_NAME, PROJECT_FILE_NAME);
+        annotate(coldController, "1.txt");
+        long coldNanos = System.nanoTime() - coldStart;
+        Factory.deleteResource(coldController);
+
+        GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME);
+
+        // when
+        long warmStart = System.nanoTime();
+        CorpusController warmController = GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME);
+        annotate(warmController, "1.txt");
+        long warmNanos = System.nanoTime() - warmStart;
+
+        // then
+        LOG.info("Time to first annotation: cold " + coldNanos / 1000000 + " ms, warm " + warmNanos / 1000000 + " ms");
+        assertTrue("Warm start " + warmNanos + "ns should be faster than cold start " + coldNanos + "ns", warmNanos < coldNanos);
+    }
+
+    private void annotate(CorpusController controller, String fileName) throws GateException, IOException {
+        Corpus corpus = Factory.newCorpus("GateRuntimeTest corpus");
+        Document doc = Factory.newDocument(new File("src/main/resources/corpus/" + fileName).toURI().toURL());
+        corpus.add(doc);
+        try {
+            controller.setCorpus(corpus);
+            controller.execute();
+            assertFalse(doc.getAnnotations().isEmpty());
+        } finally {
+            controller.setCorpus(null);
+            Factory.deleteResource(doc);
+            Factory.deleteResource(corpus);
+        }
+    }
+}
@@ -2,12 +2,9 @@ package net.myrts.gate;
 
 import document.GateDocument;
 import gate.*;
-import gate.corpora.RepositioningInfo;
-import gate.creole.ResourceInstantiationException;
 import gate.util.GateException;
 import gate.util.InvalidOffsetException;
-import gate.util.Out;
-import gate.util.persistence.PersistenceManager;
+import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,13 +13,12 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.*;
 
+import static net.myrts.gate.AnnotationExpectations.expectAnnotations;
 import static net.myrts.gate.Asserts.assertAnnotation;
 import static org.junit.Assert.*;
 
@@ -40,12 +36,15 @@ public class GateTest {
 
     private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
 
+    @Rule
+    public GateResources resources = new GateResources();
+
     @Test
     public void generatingJAXB() throws JAXBException, IOException, GateException {
         JAXBContext context = JAXBContext.newInstance(GateDocument.class);
 
         processAndSaveToXML("1.txt");
-        File file = new File("src\\main\\resources\\gate_output.xml");
+        File file = new File("src/main/resources/gate_output.xml");
         Unmarshaller um = context.createUnmarshaller();
         GateDocument gateDoc = (GateDocument) um.unmarshal(file);
 
@@ -53,7 +52,7 @@ public class GateTest {
 
         Marshaller m = context.createMarshaller();
         m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        m.marshal(gateDoc, new File("src\\main\\resources\\jaxb_output.xml"));
+        m.marshal(gateDoc, new File("src/main/resources/jaxb_output.xml"));
 //        m.marshal(gateDoc, System.out);
     }
 
@@ -81,6 +80,42 @@ public class GateTest {
         assertAnnotation(annotations, annotationType, "Wall", 2247L);
     }
 
+    @Test
+    public void shouldParseLookupCityInOnePass() throws IOException, GateException {
+        //given
+        //when
+        Document doc = getDocument("1.txt");
+
+        String annotationType = "Lookup";
+        List<ContentAnnotation> annotations = getDefaultAnnotations(annotationType, doc);
+        assertTrue(!annotations.isEmpty());
+
+        // then
+        expectAnnotations(annotationType).withSubType("location").withMinorType("city")
+                .expect("Hepburn", 0L)
+                .expect("Hepburn", 355L)
+                .expect("Hepburn", 546L)
+                .expect("Louisville", 561L)
+                .expect("Hepburn", 616L)
+                .expect("Hepburn", 848L)
+                .expect("Lee", 2204L)
+                .expect("Wall", 2247L)
+                .verify(annotations);
+    }
+
+    @Test
+    public void shouldMatchGoldenFiles() throws IOException, GateException {
+        //given
+        //when
+        Document doc = getDocument("1.txt");
+
+        // then
+        // run with -Dgateunit.golden.update=true to rewrite the files after an intended change
+        for (String annotationType : new String[]{"Location", "Person", "Organization", "Lookup", "Date", "Token"}) {
+            GoldenFile.forAnnotations("1.txt", annotationType).verify(getDefaultAnnotations(annotationType, doc));
+        }
+    }
+
     @Test
     public void shouldParsePerson() throws IOException, GateException {
         //given
@@ -175,48 +210,42 @@ public class GateTest {
     }
 
     private Document getDocument(String inputFileName) throws GateException, IOException {
-        Corpus corpus = annotateDocument(inputFileName);
-
-        Iterator iter = corpus.iterator();
-        return (Document) iter.next();
+        // unchanged text and grammars are loaded from the result cache instead of being annotated again
+        CorpusConfig config = CorpusConfig.forCorpusFiles(inputFileName);
+        AnnotationCache cache = GateRuntime.getAnnotationCache(PLUGIN_NAME, PROJECT_FILE_NAME);
+        try {
+            return cache.getDocument(config.getDocumentUrls().get(0), config, GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GateException("Interrupted while waiting for a controller", e);
+        }
     }
 
     private void processAndSaveToXML(String inputFileName) throws IOException, GateException {
-        String doc = getDocument(inputFileName).toXml();
-        PrintWriter out = new PrintWriter("src/main/resources/gate_output.xml");
-        out.println(doc);
-        out.close();
+        // streamed to the file instead of building the whole XML string with toXml()
+        try {
+            GateXmlWriter.writeDocument(getDocument(inputFileName), new File("src/main/resources/gate_output.xml"));
+        } catch (XMLStreamException e) {
+            throw new GateException("Cannot write " + inputFileName + " as GATE XML", e);
+        }
     }
 
-    /**
-     * Initialise the ANNIE system. This creates a "corpus pipeline"
-     * application that can be used to run sets of documents through
-     * the extraction system.
-     */
-    private CorpusController initGateProject(String pluginName, String projectFileName) throws GateException, IOException {
-        // load the ANNIE application from the saved state in plugins/ANNIE
-        File pluginsHome = Gate.getPluginsHome();
-        File anniePlugin = new File(pluginsHome, pluginName);
-        File annieGapp = new File(anniePlugin, projectFileName);
-        return (CorpusController) PersistenceManager.loadObjectFromFile(annieGapp);
-    } // initGateProject()
-
     private List<ContentAnnotation> getNamedAnnotations(String annotationSetName, String annotationType, Document doc) throws InvalidOffsetException {
         AnnotationSet annotationSet = doc.getAnnotations(annotationSetName);
         assertNotNull(annotationSet);
-        return getContentAnnotations(annotationType, doc, annotationSet);
+        return AnnotationExtractor.getContentAnnotations(annotationType, doc, annotationSet);
     }
 
     private List<ContentAnnotation> getDefaultAnnotations(String annotationType, Document doc) throws InvalidOffsetException {
         AnnotationSet annotationSet = doc.getAnnotations();
         assertNotNull(annotationSet);
-        return getContentAnnotations(annotationType, doc, annotationSet);
+        return AnnotationExtractor.getContentAnnotations(annotationType, doc, annotationSet);
     }
 
     private List<ContentAnnotation> getDefaultAnnotations(String annotationType, String annotationSubType, Document doc) throws InvalidOffsetException {
         AnnotationSet annotationSet = doc.getAnnotations();
         List<ContentAnnotation> subTypeAnnotations = new ArrayList<>();
-        List<ContentAnnotation> annotations = getContentAnnotations(annotationType, doc, annotationSet);
+        List<ContentAnnotation> annotations = AnnotationExtractor.getContentAnnotations(annotationType, doc, annotationSet);
         for (ContentAnnotation contentAnnotation : annotations) {
             Annotation annotation = contentAnnotation.getAnnotation();
             FeatureMap featureMap = annotation.getFeatures();
@@ -230,7 +259,7 @@ public class GateTest {
     private List<ContentAnnotation> getDefaultAnnotations(String annotationType, String annotationSubType, String annotationMinorType, Document doc) throws InvalidOffsetException {
         AnnotationSet annotationSet = doc.getAnnotations();
         List<ContentAnnotation> subTypeAnnotations = new ArrayList<>();
-        List<ContentAnnotation> annotations = getContentAnnotations(annotationType, doc, annotationSet);
+        List<ContentAnnotation> annotations = AnnotationExtractor.getContentAnnotations(annotationType, doc, annotationSet);
         for (ContentAnnotation contentAnnotation : annotations) {
             Annotation annotation = contentAnnotation.getAnnotation();
             FeatureMap featureMap = annotation.getFeatures();
@@ -242,79 +271,15 @@ public class GateTest {
         return subTypeAnnotations;
     }
 
-    private List<ContentAnnotation> getContentAnnotations(String annotationType, Document doc, AnnotationSet annotationSet) {
-        FeatureMap docFeatures = doc.getFeatures();
-        String originalContent = (String)
-                docFeatures.get(GateConstants.ORIGINAL_DOCUMENT_CONTENT_FEATURE_NAME);
-        RepositioningInfo info = (RepositioningInfo)
-                docFeatures.get(GateConstants.DOCUMENT_REPOSITIONING_INFO_FEATURE_NAME);
-        List<Annotation> annotationList = new ArrayList<>(annotationSet);
-        Collections.sort(annotationList, (o1, o2) -> o1.getStartNode().getOffset().compareTo(o2.getStartNode().getOffset()));
-        List<ContentAnnotation> annotations = new ArrayList<>();
-        for (Annotation annotation : annotationList) {
-            if (annotationType.equals(annotation.getType())) {
-                long insertPositionStart =
-                        annotation.getStartNode().getOffset();
-                long insertPositionEnd = annotation.getEndNode().getOffset();
-                if (info != null) {
-                    insertPositionStart = info.getOriginalPos(insertPositionStart);
-                    insertPositionEnd = info.getOriginalPos(insertPositionEnd, true);
-                }
-                if (insertPositionEnd != -1 && insertPositionStart != -1) {
-                    annotations.add(new ContentAnnotation(annotation, originalContent.substring((int) insertPositionStart, (int) insertPositionEnd)));
-                }
-            }
-        }
-        return annotations;
-    }
-
     private Corpus annotateDocument(String fileNames) throws GateException, IOException {
-        String workDir = System.getProperty("user.dir");
-        System.setProperty("gate.plugins.home", workDir + "/src/main/resources/gate-home/plugins");
-        System.setProperty("gate.site.config", workDir + "/src/main/resources/gate-home/gate.xml");
-        StringBuilder corpusPathSeparated = new StringBuilder();
-        for (String fileName : fileNames.split(",")) {
-            String fullyQualifiedName = String.valueOf(new File(workDir + "/src/main/resources/corpus/" + fileName).toURI());
-            corpusPathSeparated.append(fullyQualifiedName).append(',');
+        // GATE is initialised and ANNIE is loaded once per JVM, document shards run on pooled duplicates
+        ParallelCorpusRunner runner = GateRuntime.getParallelCorpusRunner(PLUGIN_NAME, PROJECT_FILE_NAME);
+        try {
+            return runner.annotate(CorpusConfig.forCorpusFiles(fileNames));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GateException("Interrupted while waiting for a controller", e);
         }
-        if (corpusPathSeparated.length() > 0) {
-            corpusPathSeparated.deleteCharAt(corpusPathSeparated.length() - 1);
-            System.setProperty("gate.corpus.files", corpusPathSeparated.toString());
-        }
-        // initialise the GATE library
-        Out.prln("Initialising GATE...");
-        Gate.init();
-        Out.prln("...GATE initialised");
-
-        CorpusController annieController = initGateProject(PLUGIN_NAME, PROJECT_FILE_NAME);
-
-        // create a GATE corpus and add a document for each command-line
-        // argument
-        Corpus corpus = addDocumentsToCorpus();
-
-        // tell the pipeline about the corpus and run it
-        annieController.setCorpus(corpus);
-        annieController.execute();
-        return corpus;
-    }
-
-    private Corpus addDocumentsToCorpus() throws ResourceInstantiationException, MalformedURLException {
-        Corpus corpus = Factory.newCorpus("StandAloneAnnie corpus");
-        String filesIncorpus = System.getProperty("gate.corpus.files");
-        String[] args = filesIncorpus.split(",");
-        for (String arg : args) {
-            URL u = new URL(arg);
-            FeatureMap params = Factory.newFeatureMap();
-            params.put("sourceUrl", u);
-            params.put("markupAware", false);
-            params.put("preserveOriginalContent", true);
-            params.put("collectRepositioningInfo", true);
-            Out.prln("Creating doc for " + u);
-            Document doc = (Document)
-                    Factory.createResource("gate.corpora.DocumentImpl", params);
-            corpus.add(doc);
-        } // for each of args
-        return corpus;
     }
 
 
@@ -0,0 +1,173 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.corpora.DocumentStaxUtils;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a GATE document as GATE XML straight to an output stream with an
+ * {@link XMLStreamWriter}. Unlike {@link Document#toXml()} the serialized
+ * document is never held in memory: the text is written in small chunks
+ * between the annotation nodes and the node offsets are kept in a primitive
+ * array. Features are written by GATE itself, so the output is read back
+ * by GATE and by the {@code document} package.
+ */
+public final class GateXmlWriter {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private GateXmlWriter() {
+    }
+
+    public static void writeDocument(Document doc, File file) throws IOException, XMLStreamException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            writeDocument(doc, out);
+        }
+    }
+
+    public static void writeDocument(Document doc, OutputStream out) throws XMLStreamException {
+        List<AnnotationSet> annotationSets = new ArrayList<>();
+        annotationSets.add(doc.getAnnotations());
+        Map<String, AnnotationSet> namedAnnotationSets = doc.getNamedAnnotationSets();
+        if (namedAnnotationSets != null) {
+            annotationSets.addAll(namedAnnotationSets.values());
+        }
+
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, ENCODING);
+        writer.writeStartDocument(ENCODING, "1.0");
+        newLine(writer);
+        writer.writeStartElement("GateDocument");
+        writer.writeAttribute("version", DocumentStaxUtils.GATE_XML_VERSION);
+        newLine(writer);
+        writer.writeStartElement("GateDocumentFeatures");
+        newLine(writer);
+        DocumentStaxUtils.writeFeatures(doc.getFeatures(), writer, "");
+        writer.writeEndElement();
+        newLine(writer);
+        writeTextWithNodes(doc.getContent().toString(), nodeOffsets(annotationSets), writer);
+        newLine(writer);
+        for (AnnotationSet annotationSet : annotationSets) {
+            writeAnnotationSet(annotationSet, writer);
+            newLine(writer);
+        }
+        writer.writeEndElement();
+        newLine(writer);
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    /**
+     * Sorted distinct start and end offsets of every annotation.
+     */
+    private static long[] nodeOffsets(List<AnnotationSet> annotationSets) {
+        int size = 0;
+        for (AnnotationSet annotationSet : annotationSets) {
+            size += annotationSet.size() * 2;
+        }
+        long[] offsets = new long[size];
+        int i = 0;
+        for (AnnotationSet annotationSet : annotationSets) {
+            for (Annotation annotation : annotationSet) {
+                offsets[i++] = annotation.getStartNode().getOffset();
+                offsets[i++] = annotation.getEndNode().getOffset();
+            }
+        }
+        Arrays.sort(offsets, 0, i);
+        int distinct = 0;
+        for (int j = 0; j < i; j++) {
+            if (distinct == 0 || offsets[distinct - 1] != offsets[j]) {
+                offsets[distinct++] = offsets[j];
+            }
+        }
+        return Arrays.copyOf(offsets, distinct);
+    }
+
+    private static void writeTextWithNodes(String content, long[] nodeOffsets, XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartElement("TextWithNodes");
+        char[] chunk = new char[CHUNK_SIZE];
+        int position = 0;
+        for (long nodeOffset : nodeOffsets) {
+            int offset = (int) nodeOffset;
+            writeText(content, position, offset, chunk, writer);
+            writer.writeEmptyElement("Node");
+            writer.writeAttribute("id", String.valueOf(offset));
+            position = offset;
+        }
+        writeText(content, position, content.length(), chunk, writer);
+        writer.writeEndElement();
+    }
+
+    private static void writeText(String content, int from, int to, char[] chunk, XMLStreamWriter writer) throws XMLStreamException {
+        for (int start = from; start < to; start += chunk.length) {
+            int length = Math.min(chunk.length, to - start);
+            content.getChars(start, start + length, chunk, 0);
+            for (int i = 0; i < length; i++) {
+                if (isInvalidXmlChar(content, start + i)) {
+                    chunk[i] = ' ';
+                }
+            }
+            writer.writeCharacters(chunk, 0, length);
+        }
+    }
+
+    private static void writeAnnotationSet(AnnotationSet annotationSet, XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartElement("AnnotationSet");
+        if (annotationSet.getName() != null && !annotationSet.getName().isEmpty()) {
+            writer.writeAttribute("Name", annotationSet.getName());
+        }
+        newLine(writer);
+        for (Annotation annotation : annotationSet) {
+            writer.writeStartElement("Annotation");
+            writer.writeAttribute("Id", String.valueOf(annotation.getId()));
+            writer.writeAttribute("Type", annotation.getType());
+            writer.writeAttribute("StartNode", String.valueOf(annotation.getStartNode().getOffset()));
+            writer.writeAttribute("EndNode", String.valueOf(annotation.getEndNode().getOffset()));
+            newLine(writer);
+            DocumentStaxUtils.writeFeatures(annotation.getFeatures(), writer, "");
+            writer.writeEndElement();
+            newLine(writer);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Characters that are not allowed in XML 1.0 and are written as a space,
+     * the same replacement GATE makes.
+     */
+    private static boolean isInvalidXmlChar(String content, int i) {
+        char c = content.charAt(i);
+        if (c <= '\b' || c == '\u000b' || c == '\f' || (c >= '\u000e' && c <= '\u001f')) {
+            return true;
+        }
+        if (Character.isHighSurrogate(c)) {
+            return i >= content.length() - 1 || !Character.isLowSurrogate(content.charAt(i + 1));
+        }
+        if (Character.isLowSurrogate(c)) {
+            return i == 0 || !Character.isHighSurrogate(content.charAt(i - 1));
+        }
+        return c == '\uFFFE' || c == '\uFFFF';
+    }
+
+    private static void newLine(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeCharacters("\n");
+    }
+}
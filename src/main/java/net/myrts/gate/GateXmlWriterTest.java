@@ -0,0 +1,149 @@
+package net.myrts.gate;
+
+import document.GateDocument;
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Utils;
+import gate.util.GateException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the streaming GATE XML writer.
+ */
+public class GateXmlWriterTest {
+    private static final Logger LOG = LoggerFactory.getLogger(GateXmlWriterTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int SYNTHETIC_TOKENS = 200000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRoundTripAnnotatedDocument() throws Exception {
+        // given
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        File file = folder.newFile("1.txt.xml");
+
+        // when
+        GateXmlWriter.writeDocument(doc, file);
+
+        // then
+        Document reloaded = loadDocument(file);
+        assertEquals(doc.getContent().toString(), reloaded.getContent().toString());
+        assertEquals(describe(doc.getAnnotations()), describe(reloaded.getAnnotations()));
+        assertEquals(doc.getNamedAnnotationSets().keySet(), reloaded.getNamedAnnotationSets().keySet());
+        for (String name : doc.getNamedAnnotationSets().keySet()) {
+            assertEquals(describe(doc.getAnnotations(name)), describe(reloaded.getAnnotations(name)));
+        }
+        GateDocument gateDoc = (GateDocument) JAXBContext.newInstance(GateDocument.class).createUnmarshaller().unmarshal(file);
+        assertEquals(1 + doc.getNamedAnnotationSets().size(), gateDoc.getAnnotationSet().size());
+        Factory.deleteResource(reloaded);
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+    }
+
+    @Test
+    public void shouldReplaceCharactersIllegalInXml() throws Exception {
+        GateRuntime.init();
+        Document doc = Factory.newDocument("bell\u0007 and 😀 and \ud83d");
+        doc.getAnnotations().add(0L, 4L, "Word", Factory.newFeatureMap());
+        File file = folder.newFile("illegal.xml");
+
+        GateXmlWriter.writeDocument(doc, file);
+
+        Document reloaded = loadDocument(file);
+        assertEquals("bell  and 😀 and  ", reloaded.getContent().toString());
+        assertEquals(1, reloaded.getAnnotations().get("Word").size());
+        Factory.deleteResource(reloaded);
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldAllocateLessThanToXml() throws Exception {
+        Document doc = SyntheticDocuments.create(SYNTHETIC_TOKENS, i -> "Token");
+        File toXmlFile = folder.newFile("toXml.xml");
+        File streamedFile = folder.newFile("streamed.xml");
+        // warm up both paths
+        writeWithToXml(doc, toXmlFile);
+        GateXmlWriter.writeDocument(doc, streamedFile);
+
+        long start = System.nanoTime();
+        long toXmlAllocated = allocatedBytes();
+        writeWithToXml(doc, toXmlFile);
+        toXmlAllocated = allocatedBytes() - toXmlAllocated;
+        long toXmlNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long streamedAllocated = allocatedBytes();
+        GateXmlWriter.writeDocument(doc, streamedFile);
+        streamedAllocated = allocatedBytes() - streamedAllocated;
+        long streamedNanos = System.nanoTime() - start;
+
+        LOG.info("toXml: " + toXmlAllocated / 1024 + " KB allocated, " + mbPerSecond(toXmlFile.length(), toXmlNanos) + " MB/s; "
+                + "streamed: " + streamedAllocated / 1024 + " KB allocated, " + mbPerSecond(streamedFile.length(), streamedNanos) + " MB/s");
+        Document reloaded = loadDocument(streamedFile);
+        assertEquals(SYNTHETIC_TOKENS, reloaded.getAnnotations().get("Token").size());
+        assertTrue("Streaming should allocate less than toXml()", streamedAllocated < toXmlAllocated);
+        Factory.deleteResource(reloaded);
+        Factory.deleteResource(doc);
+    }
+
+    private static void writeWithToXml(Document doc, File file) throws Exception {
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(file.toPath())), StandardCharsets.UTF_8)) {
+            out.write(doc.toXml());
+        }
+    }
+
+    private static Document loadDocument(File file) throws GateException, java.net.MalformedURLException {
+        FeatureMap params = Factory.newFeatureMap();
+        params.put(Document.DOCUMENT_URL_PARAMETER_NAME, file.toURI().toURL());
+        params.put(Document.DOCUMENT_ENCODING_PARAMETER_NAME, "UTF-8");
+        return (Document) Factory.createResource("gate.corpora.DocumentImpl", params);
+    }
+
+    private static List<String> describe(AnnotationSet annotationSet) {
+        List<String> described = new ArrayList<>();
+        for (Annotation annotation : Utils.inDocumentOrder(annotationSet)) {
+            described.add(annotation.getId() + " " + annotation.getType() + " " + Utils.start(annotation) + "-" + Utils.end(annotation)
+                    + " " + new TreeMap<>(annotation.getFeatures()));
+        }
+        return described;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long mbPerSecond(long bytes, long nanos) {
+        return bytes * 1000L / Math.max(1L, nanos);
+    }
+}
@@ -0,0 +1,192 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Golden file of the annotations of one type in one document, the
+ * scalable replacement of pasting {@code Asserts.generateAsserts} output
+ * into tests. Each annotation is a line of tab separated start, end,
+ * majorType, minorType and marked text; offsets are zero padded so the
+ * lines sort in offset order as plain strings.
+ * <pre>
+ *    GoldenFile.forAnnotations("1.txt", "Person").verify(annotations);
+ * </pre>
+ * Verification is a merge of the sorted annotation lines with the lines
+ * read from the file, so the file is never loaded as a whole and every
+ * difference is reported at once. With the system property
+ * {@code gateunit.golden.update=true} the files are written instead of
+ * verified. Golden files are kept under {@code gateunit.golden.dir},
+ * {@code src/main/resources/golden} by default.
+ */
+public final class GoldenFile {
+
+    private static final String HEADER = "# start\tend\tmajorType\tminorType\tmarkedText";
+
+    private static final int REPORTED_DIFFERENCES = 20;
+
+    private final File file;
+
+    public GoldenFile(File file) {
+        this.file = file;
+    }
+
+    public static GoldenFile forAnnotations(String documentName, String annotationType) {
+        File dir = new File(System.getProperty("gateunit.golden.dir", "src/main/resources/golden"), documentName);
+        return new GoldenFile(new File(dir, annotationType + ".txt"));
+    }
+
+    public static boolean isUpdateMode() {
+        return Boolean.getBoolean("gateunit.golden.update");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Verifies the annotations against the golden file, or writes the file
+     * in update mode.
+     */
+    public void verify(List<ContentAnnotation> annotations) throws IOException {
+        if (isUpdateMode()) {
+            write(annotations);
+            return;
+        }
+        if (!file.exists()) {
+            fail("Golden file " + file + " does not exist, run with -Dgateunit.golden.update=true to create it");
+        }
+        List<String> differences = differences(annotations);
+        if (!differences.isEmpty()) {
+            fail("Annotations do not match golden file " + file + " (- expected only, + actual only):\n" + String.join("\n", differences));
+        }
+    }
+
+    public void write(List<ContentAnnotation> annotations) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String line : lines(annotations)) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Lines only in the file, prefixed with '-', and lines only in the
+     * annotations, prefixed with '+'. The first differences are listed,
+     * followed by the total counts.
+     */
+    public List<String> differences(List<ContentAnnotation> annotations) throws IOException {
+        List<String> differences = new ArrayList<>();
+        int onlyExpected = 0;
+        int onlyActual = 0;
+        Iterator<String> actual = lines(annotations).iterator();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String expectedLine = nextLine(reader);
+            String actualLine = actual.hasNext() ? actual.next() : null;
+            while (expectedLine != null || actualLine != null) {
+                int order = expectedLine == null ? 1 : actualLine == null ? -1 : expectedLine.compareTo(actualLine);
+                if (order < 0) {
+                    if (onlyExpected++ + onlyActual < REPORTED_DIFFERENCES) {
+                        differences.add("- " + expectedLine);
+                    }
+                } else if (order > 0) {
+                    if (onlyExpected + onlyActual++ < REPORTED_DIFFERENCES) {
+                        differences.add("+ " + actualLine);
+                    }
+                }
+                if (order <= 0) {
+                    expectedLine = nextLine(reader);
+                }
+                if (order >= 0) {
+                    actualLine = actual.hasNext() ? actual.next() : null;
+                }
+            }
+        }
+        if (!differences.isEmpty()) {
+            differences.add(onlyExpected + " line(s) only in the golden file, " + onlyActual + " only in the annotations");
+        }
+        return differences;
+    }
+
+    /**
+     * Next data line of the file, header and comment lines are skipped.
+     */
+    private static String nextLine(BufferedReader reader) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && line.startsWith("#"));
+        return line;
+    }
+
+    private static List<String> lines(List<ContentAnnotation> annotations) {
+        List<String> lines = new ArrayList<>(annotations.size());
+        StringBuilder line = new StringBuilder();
+        for (ContentAnnotation contentAnnotation : annotations) {
+            Annotation annotation = contentAnnotation.getAnnotation();
+            line.setLength(0);
+            pad(line, annotation.getStartNode().getOffset()).append('\t');
+            pad(line, annotation.getEndNode().getOffset()).append('\t');
+            escape(line, annotation.getFeatures().get("majorType")).append('\t');
+            escape(line, annotation.getFeatures().get("minorType")).append('\t');
+            escape(line, contentAnnotation.getMarkedTextRegion());
+            lines.add(line.toString());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static StringBuilder pad(StringBuilder line, long offset) {
+        String digits = Long.toString(offset);
+        for (int i = digits.length(); i < 10; i++) {
+            line.append('0');
+        }
+        return line.append(digits);
+    }
+
+    private static StringBuilder escape(StringBuilder line, Object value) {
+        if (value == null) {
+            return line;
+        }
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+        return line;
+    }
+}
@@ -0,0 +1,144 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for golden file verification.
+ */
+public class GoldenFileTest {
+    private static final Logger LOG = LoggerFactory.getLogger(GoldenFileTest.class);
+
+    //                                    0         1         2         3         4
+    //                                    01234567890123456789012345678901234567890123
+    private static final String CONTENT = "Hepburn met Griswold in Louisville,\tKentucky";
+
+    private static final int SYNTHETIC_TOKENS = 200000;
+
+    private static Document doc;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createDocument() throws GateException {
+        GateRuntime.init();
+        doc = Factory.newDocument(CONTENT);
+        add(doc, 0, 7, "location", "city");
+        add(doc, 24, 34, "location", "city");
+        add(doc, 34, 44, "location", "province");
+    }
+
+    @AfterClass
+    public static void deleteDocument() {
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldVerifyWrittenFile() throws Exception {
+        // given
+        GoldenFile goldenFile = new GoldenFile(new File(folder.getRoot(), "doc/Location.txt"));
+        List<ContentAnnotation> locations = locations(doc);
+
+        // when
+        goldenFile.write(locations);
+
+        // then
+        goldenFile.verify(locations);
+        List<String> lines = Files.readAllLines(goldenFile.getFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals("0000000034\t0000000044\tlocation\tprovince\t,\\tKentucky", lines.get(3));
+    }
+
+    @Test
+    public void shouldReportEveryDifference() throws Exception {
+        GoldenFile goldenFile = new GoldenFile(folder.newFile("Location.txt"));
+        Files.write(goldenFile.getFile().toPath(), (
+                "# start\tend\tmajorType\tminorType\tmarkedText\n"
+                        + "0000000000\t0000000007\tlocation\tcity\tHepburn\n"
+                        + "0000000012\t0000000020\tlocation\tcity\tGriswold\n"
+                        + "0000000024\t0000000034\tlocation\tcity\tLouisville\n").getBytes(StandardCharsets.UTF_8));
+
+        List<String> differences = goldenFile.differences(locations(doc));
+
+        assertEquals(3, differences.size());
+        assertEquals("- 0000000012\t0000000020\tlocation\tcity\tGriswold", differences.get(0));
+        assertEquals("+ 0000000034\t0000000044\tlocation\tprovince\t,\\tKentucky", differences.get(1));
+        assertEquals("1 line(s) only in the golden file, 1 only in the annotations", differences.get(2));
+        try {
+            goldenFile.verify(locations(doc));
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Annotations do not match golden file"));
+            return;
+        }
+        fail("Differences from the golden file should fail");
+    }
+
+    @Test
+    public void shouldWriteInUpdateMode() throws Exception {
+        GoldenFile goldenFile = new GoldenFile(new File(folder.getRoot(), "Location.txt"));
+        System.setProperty("gateunit.golden.update", "true");
+        try {
+            goldenFile.verify(locations(doc));
+        } finally {
+            System.clearProperty("gateunit.golden.update");
+        }
+
+        assertTrue(goldenFile.differences(locations(doc)).isEmpty());
+    }
+
+    @Test
+    public void benchmarkGoldenFileAgainstGeneratedAsserts() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < SYNTHETIC_TOKENS; i++) {
+            content.append(i % 2 == 0 ? "Griswold " : "Kentucky ");
+        }
+        Document large = Factory.newDocument(content.toString());
+        for (int i = 0; i < SYNTHETIC_TOKENS; i++) {
+            add(large, i * 9L, i * 9L + 8, "location", "city");
+        }
+        List<ContentAnnotation> locations = locations(large);
+        GoldenFile goldenFile = new GoldenFile(folder.newFile("large.txt"));
+
+        long start = System.nanoTime();
+        goldenFile.write(locations);
+        goldenFile.verify(locations);
+        long goldenNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        String asserts = Asserts.generateAsserts(locations);
+        long generateNanos = System.nanoTime() - start;
+
+        LOG.info(SYNTHETIC_TOKENS + " annotations: golden file written and verified in " + goldenNanos / 1000000 + " ms ("
+                + goldenFile.getFile().length() / 1024 + " KB), asserts generated in " + generateNanos / 1000000 + " ms ("
+                + asserts.length() / 1024 + " K chars)");
+        Factory.deleteResource(large);
+    }
+
+    private static List<ContentAnnotation> locations(Document document) {
+        return AnnotationExtractor.getContentAnnotations("Location", document, document.getAnnotations());
+    }
+
+    private static void add(Document document, long start, long end, String majorType, String minorType) throws GateException {
+        FeatureMap features = Factory.newFeatureMap();
+        features.put("majorType", majorType);
+        features.put("minorType", minorType);
+        document.getAnnotations().add(start, end, "Location", features);
+    }
+}
@@ -0,0 +1,337 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Corpus run that re-annotates only the documents whose inputs changed since
+ * the previous run and loads the stored results of the others.
+ * <p>
+ * A manifest in the run directory records the content fingerprint of every
+ * pipeline resource, the application file and every file under the resources
+ * directory, and of every document. Resource fingerprints are reused while
+ * the size and modification time of a file stay the same, so an unchanged
+ * tree is not hashed again. A document is re-annotated when:
+ * <ul>
+ * <li>it is new or its content changed;</li>
+ * <li>a pipeline resource other than a gazetteer list changed, as JAPE
+ * grammars and settings may affect any document;</li>
+ * <li>a gazetteer list changed and the document text contains one of the
+ * added or removed entries, or of the entries whose features changed.
+ * Copies of the lists from the previous run are kept to compute the changed
+ * entries, and texts are compared ignoring case and runs of white space, so
+ * the check errs towards re-annotation;</li>
+ * <li>it was annotated with different markup and repositioning settings.</li>
+ * </ul>
+ */
+public class IncrementalRun {
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalRun.class);
+
+    private static final String MANIFEST = "manifest.properties";
+    private static final String RESOURCE = "resource.";
+    private static final String DOCUMENT = "document.";
+    private static final String GAZETTEER_LIST_SUFFIX = ".lst";
+
+    private final File directory;
+    private final File projectFile;
+    private final File resourcesHome;
+    private final ControllerPool pool;
+
+    private final List<URL> annotated = new ArrayList<>();
+    private final List<URL> reused = new ArrayList<>();
+    private final Set<String> changedResources = new HashSet<>();
+
+    public IncrementalRun(File directory, File projectFile, File resourcesHome, ControllerPool pool) {
+        this.directory = directory;
+        this.projectFile = projectFile;
+        this.resourcesHome = resourcesHome;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the annotated documents in the order of the configuration,
+     * either loaded from the previous run or run through the pipeline. The
+     * caller deletes them when done.
+     */
+    public List<Document> annotate(CorpusConfig config) throws GateException, IOException, InterruptedException {
+        annotated.clear();
+        reused.clear();
+        changedResources.clear();
+        Files.createDirectories(new File(directory, "documents").toPath());
+        Properties previous = loadManifest();
+        Properties manifest = new Properties();
+
+        Map<String, File> resources = listResources();
+        for (Map.Entry<String, File> resource : resources.entrySet()) {
+            String fingerprint = fingerprint(resource.getValue(), previous.getProperty(RESOURCE + resource.getKey()));
+            manifest.setProperty(RESOURCE + resource.getKey(), fingerprint);
+            if (!fingerprint.equals(previous.getProperty(RESOURCE + resource.getKey()))) {
+                changedResources.add(resource.getKey());
+            }
+        }
+        for (String name : previous.stringPropertyNames()) {
+            if (name.startsWith(RESOURCE) && !resources.containsKey(name.substring(RESOURCE.length()))) {
+                changedResources.add(name.substring(RESOURCE.length()));
+            }
+        }
+        boolean pipelineChanged = false;
+        Set<String> changedEntries = new HashSet<>();
+        for (String resource : changedResources) {
+            if (resource.endsWith(GAZETTEER_LIST_SUFFIX)) {
+                changedEntries.addAll(changedEntries(resource, resources.get(resource)));
+            } else {
+                pipelineChanged = true;
+            }
+        }
+
+        List<Document> documents = new ArrayList<>();
+        for (URL url : config.getDocumentUrls()) {
+            // the stored result depends on the settings it was loaded with
+            String contentHash = hash(url) + ':' + config.isMarkupAware() + ':' + config.isPreserveOriginalContent()
+                    + ':' + config.isCollectRepositioningInfo();
+            String key = DOCUMENT + url;
+            File result = resultFile(url, ".xml");
+            boolean unchanged = contentHash.equals(previous.getProperty(key)) && result.isFile() && !pipelineChanged
+                    && !containsAny(resultFile(url, ".txt"), changedEntries);
+            Document doc = unchanged ? load(result) : null;
+            if (doc != null) {
+                reused.add(url);
+            } else {
+                doc = annotate(url, config);
+                annotated.add(url);
+            }
+            manifest.setProperty(key, contentHash);
+            documents.add(doc);
+        }
+        // a list copy older than the manifest only widens the changed entries of the next run
+        saveManifest(manifest);
+        saveLists(resources);
+        LOG.info(report());
+        return documents;
+    }
+
+    public List<URL> getAnnotated() {
+        return Collections.unmodifiableList(annotated);
+    }
+
+    public List<URL> getReused() {
+        return Collections.unmodifiableList(reused);
+    }
+
+    public Set<String> getChangedResources() {
+        return Collections.unmodifiableSet(changedResources);
+    }
+
+    public String report() {
+        return "Incremental run " + directory + ": annotated=" + annotated.size() + ", reused=" + reused.size()
+                + ", changed resources=" + changedResources.size()
+                + (changedResources.isEmpty() || changedResources.size() > 10 ? "" : " " + new TreeSet<>(changedResources));
+    }
+
+    private Document annotate(URL url, CorpusConfig config) throws GateException, IOException, InterruptedException {
+        CorpusConfig documentConfig = new CorpusConfig(Collections.singletonList(url), config.isMarkupAware(),
+                config.isPreserveOriginalContent(), config.isCollectRepositioningInfo());
+        Corpus corpus = pool.annotate(documentConfig);
+        Document doc = corpus.get(0);
+        corpus.clear();
+        Factory.deleteResource(corpus);
+        File result = resultFile(url, ".xml");
+        File tmp = resultFile(url, ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            GateXmlWriter.writeDocument(doc, out);
+        } catch (XMLStreamException e) {
+            throw new GateException("Cannot store annotated " + url, e);
+        }
+        Files.move(tmp.toPath(), result.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(resultFile(url, ".txt").toPath(), normalize(doc.getContent().toString()).getBytes(StandardCharsets.UTF_8));
+        return doc;
+    }
+
+    private static Document load(File result) throws GateException {
+        try {
+            FeatureMap params = Factory.newFeatureMap();
+            params.put("sourceUrl", result.toURI().toURL());
+            params.put("encoding", StandardCharsets.UTF_8.name());
+            Document doc = (Document) Factory.createResource("gate.corpora.DocumentImpl", params);
+            OffsetTranslator.restoreRepositioningInfo(doc);
+            return doc;
+        } catch (IOException e) {
+            throw new GateException("Failed to load stored document " + result, e);
+        }
+    }
+
+    /**
+     * The application file and every file under the resources directory, by
+     * path relative to the resources directory.
+     */
+    private Map<String, File> listResources() throws IOException {
+        Map<String, File> resources = new TreeMap<>();
+        resources.put(projectFile.getName(), projectFile);
+        try (Stream<Path> paths = Files.walk(resourcesHome.toPath())) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                resources.put(resourcesHome.toPath().relativize(path).toString().replace(File.separatorChar, '/'), path.toFile());
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Fingerprint {@code size:lastModified:hash}, the hash of the previous
+     * fingerprint is reused while size and modification time match.
+     */
+    private static String fingerprint(File file, String previous) throws IOException {
+        String stat = file.length() + ":" + file.lastModified() + ":";
+        if (previous != null && previous.startsWith(stat)) {
+            return previous;
+        }
+        return stat + AnnotationCache.hash(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Entries of the lines added to or removed from the list since the
+     * previous run, all entries when there is no copy of the previous list.
+     * Lines are compared with their features, so an entry whose features
+     * changed is reported as well.
+     */
+    private Set<String> changedEntries(String resource, File list) throws IOException {
+        Set<String> current = list == null ? Collections.<String>emptySet() : readLines(list);
+        File copy = new File(directory, "lists/" + resource);
+        Set<String> old = copy.isFile() ? readLines(copy) : Collections.<String>emptySet();
+        Set<String> changed = new HashSet<>();
+        for (String line : current) {
+            if (!old.contains(line)) {
+                changed.add(entry(line));
+            }
+        }
+        for (String line : old) {
+            if (!current.contains(line)) {
+                changed.add(entry(line));
+            }
+        }
+        changed.remove("");
+        return changed;
+    }
+
+    private static Set<String> readLines(File list) throws IOException {
+        Set<String> lines = new HashSet<>();
+        for (String line : Files.readAllLines(list.toPath(), StandardCharsets.UTF_8)) {
+            String normalized = normalize(line);
+            if (!normalized.isEmpty()) {
+                lines.add(normalized);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Entry text of a list line, features may follow it after a separator.
+     */
+    private static String entry(String line) {
+        return line.split("[&\t]", 2)[0].trim();
+    }
+
+    private static boolean containsAny(File text, Set<String> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return false;
+        }
+        if (!text.isFile()) {
+            return true;
+        }
+        String content = new String(Files.readAllBytes(text.toPath()), StandardCharsets.UTF_8);
+        for (String entry : entries) {
+            if (content.contains(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void saveLists(Map<String, File> resources) throws IOException {
+        for (String resource : changedResources) {
+            File copy = new File(directory, "lists/" + resource);
+            File list = resources.get(resource);
+            if (!resource.endsWith(GAZETTEER_LIST_SUFFIX)) {
+                continue;
+            }
+            if (list == null) {
+                Files.deleteIfExists(copy.toPath());
+            } else {
+                Files.createDirectories(copy.getParentFile().toPath());
+                Files.copy(list.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private File resultFile(URL url, String suffix) {
+        return new File(directory, "documents/" + AnnotationCache.hash(url.toString().getBytes(StandardCharsets.UTF_8)) + suffix);
+    }
+
+    private static String hash(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            return AnnotationCache.hash(readAll(in));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private Properties loadManifest() throws IOException {
+        Properties manifest = new Properties();
+        File file = new File(directory, MANIFEST);
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    private void saveManifest(Properties manifest) throws IOException {
+        File file = new File(directory, MANIFEST);
+        File tmp = new File(directory, MANIFEST + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            manifest.store(out, "Fingerprints of the last incremental run");
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
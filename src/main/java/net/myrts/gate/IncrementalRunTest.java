@@ -0,0 +1,196 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.Factory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for incremental corpus runs.
+ */
+public class IncrementalRunTest {
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalRunTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final String ANNIE_RESOURCES = "src/main/resources/gate-home/plugins/ANNIE/resources/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File resources;
+
+    private File court;
+
+    private File lake;
+
+    private CorpusConfig config;
+
+    /**
+     * Tracks copies of a few pipeline resources, so they can be edited, and
+     * two documents: the corpus document and a short one.
+     */
+    @Before
+    public void createCorpusAndResources() throws Exception {
+        GateRuntime.init();
+        resources = folder.newFolder("resources");
+        copy("gazetteer/city.lst");
+        copy("gazetteer/person_male.lst");
+        copy("NE/date.jape");
+        court = folder.newFile("court.txt");
+        Files.copy(new File("src/main/resources/corpus/1.txt").toPath(), court.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        lake = folder.newFile("lake.txt");
+        Files.write(lake.toPath(), "The lake was quiet in the morning.".getBytes(StandardCharsets.UTF_8));
+        List<URL> urls = Arrays.asList(court.toURI().toURL(), lake.toURI().toURL());
+        config = new CorpusConfig(urls, false, true, true);
+    }
+
+    @Test
+    public void shouldReuseResultsOfUnchangedRun() throws Exception {
+        // given
+        IncrementalRun run = newRun();
+        List<Document> first = run.annotate(config);
+        assertEquals(2, run.getAnnotated().size());
+        int persons = first.get(0).getAnnotations().get("Person").size();
+        delete(first);
+
+        // when
+        List<Document> second = run.annotate(config);
+
+        // then
+        assertEquals(Collections.emptyList(), run.getAnnotated());
+        assertEquals(2, run.getReused().size());
+        assertEquals(persons, second.get(0).getAnnotations().get("Person").size());
+        delete(second);
+    }
+
+    @Test
+    public void shouldReannotateOnlyEditedDocument() throws Exception {
+        IncrementalRun run = newRun();
+        delete(run.annotate(config));
+
+        Files.write(lake.toPath(), " Griswold swam across.".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        delete(run.annotate(config));
+
+        assertEquals(Collections.singletonList(lake.toURI().toURL()), run.getAnnotated());
+        assertEquals(Collections.singletonList(court.toURI().toURL()), run.getReused());
+    }
+
+    @Test
+    public void shouldReannotateOnlyDocumentsWithChangedListEntries() throws Exception {
+        IncrementalRun run = newRun();
+        delete(run.annotate(config));
+
+        append("gazetteer/person_male.lst", "Chase");
+        delete(run.annotate(config));
+
+        assertEquals(Collections.singleton("gazetteer/person_male.lst"), run.getChangedResources());
+        assertEquals(Collections.singletonList(court.toURI().toURL()), run.getAnnotated());
+        assertEquals(Collections.singletonList(lake.toURI().toURL()), run.getReused());
+
+        append("gazetteer/city.lst", "Atlantis");
+        delete(run.annotate(config));
+
+        assertEquals(Collections.emptyList(), run.getAnnotated());
+        LOG.info(run.report());
+    }
+
+    @Test
+    public void shouldReannotateDocumentsWithChangedEntryFeatures() throws Exception {
+        IncrementalRun run = newRun();
+        delete(run.annotate(config));
+
+        replace("gazetteer/city.lst", "\nLouisville\n", "\nLouisville&minorType=edited\n");
+        delete(run.annotate(config));
+
+        assertEquals(Collections.singletonList(court.toURI().toURL()), run.getAnnotated());
+        assertEquals(Collections.singletonList(lake.toURI().toURL()), run.getReused());
+    }
+
+    @Test
+    public void shouldReannotateEverythingWhenSettingsChange() throws Exception {
+        IncrementalRun run = newRun();
+        delete(run.annotate(config));
+
+        CorpusConfig markupAware = new CorpusConfig(config.getDocumentUrls(), true, true, true);
+        List<Document> annotated = run.annotate(markupAware);
+        assertEquals(2, run.getAnnotated().size());
+        List<String> tokens = markedTexts(annotated.get(0), "Token");
+        delete(annotated);
+
+        List<Document> reused = run.annotate(markupAware);
+
+        assertEquals(2, run.getReused().size());
+        assertEquals(tokens, markedTexts(reused.get(0), "Token"));
+        delete(reused);
+    }
+
+    @Test
+    public void shouldReannotateEverythingWhenGrammarChanges() throws Exception {
+        IncrementalRun run = newRun();
+        delete(run.annotate(config));
+
+        append("NE/date.jape", "// edited");
+        delete(run.annotate(config));
+
+        assertEquals(2, run.getAnnotated().size());
+        assertEquals(Collections.emptyList(), run.getReused());
+    }
+
+    private IncrementalRun newRun() throws Exception {
+        return new IncrementalRun(new File(folder.getRoot(), "run"), GateRuntime.getProjectFile(PLUGIN_NAME, PROJECT_FILE_NAME),
+                resources, GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME));
+    }
+
+    private void copy(String resource) throws Exception {
+        File copy = new File(resources, resource);
+        Files.createDirectories(copy.getParentFile().toPath());
+        Files.copy(new File(ANNIE_RESOURCES + resource).toPath(), copy.toPath());
+    }
+
+    private void append(String resource, String line) throws Exception {
+        Files.write(new File(resources, resource).toPath(), ("\n" + line + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private void replace(String resource, String target, String replacement) throws Exception {
+        Path path = new File(resources, resource).toPath();
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertTrue(content.contains(target));
+        Files.write(path, content.replace(target, replacement).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> markedTexts(Document doc, String annotationType) {
+        List<String> texts = new ArrayList<>();
+        for (ContentAnnotation annotation : AnnotationExtractor.getContentAnnotations(annotationType, doc, doc.getAnnotations())) {
+            texts.add(annotation.getMarkedText());
+        }
+        return texts;
+    }
+
+    private static void delete(List<Document> documents) {
+        for (Document doc : documents) {
+            Factory.deleteResource(doc);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package net.myrts.gate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable interval tree over annotation offsets. The intervals are kept in
+ * arrays sorted by start and then end, which are read as a balanced binary
+ * search tree rooted at the middle element, and every node is augmented with
+ * the largest end in its subtree. A query skips the subtrees ending before
+ * the queried region and the ones starting after it, so it costs O(log N)
+ * plus at most O(log N) per result instead of a scan over all annotations;
+ * coextension is a binary search.
+ * <p>
+ * Intervals are half-open like GATE annotation spans: two intervals overlap
+ * when they share at least one character.
+ */
+public final class IntervalIndex<T> {
+
+    private final Object[] items;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    private IntervalIndex(Collection<T> intervals, ToLongFunction<T> start, ToLongFunction<T> end) {
+        int size = intervals.size();
+        List<T> sorted = new ArrayList<>(intervals);
+        sorted.sort((a, b) -> {
+            int compared = Long.compare(start.applyAsLong(a), start.applyAsLong(b));
+            return compared != 0 ? compared : Long.compare(end.applyAsLong(a), end.applyAsLong(b));
+        });
+        this.items = sorted.toArray();
+        this.starts = new long[size];
+        this.ends = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = start.applyAsLong(sorted.get(i));
+            ends[i] = end.applyAsLong(sorted.get(i));
+        }
+        this.maxEnds = new long[size];
+        augment(0, size);
+    }
+
+    /**
+     * Index of all annotations of the collection, for example a set or
+     * {@code set.get(type)}.
+     */
+    public static IntervalIndex<gate.Annotation> of(Collection<gate.Annotation> annotations) {
+        return new IntervalIndex<>(annotations, a -> a.getStartNode().getOffset(), a -> a.getEndNode().getOffset());
+    }
+
+    public static IntervalIndex<gate.Annotation> of(gate.AnnotationSet annotationSet, String annotationType) {
+        return of(annotationSet.get(annotationType));
+    }
+
+    /**
+     * Index of the annotations of the type in a set read from GATE XML, where
+     * node ids are character offsets.
+     */
+    public static IntervalIndex<document.Annotation> of(document.AnnotationSet annotationSet, String annotationType) {
+        List<document.Annotation> annotations = new ArrayList<>();
+        for (document.Annotation annotation : annotationSet.getAnnotation()) {
+            if (annotationType.equals(annotation.getType())) {
+                annotations.add(annotation);
+            }
+        }
+        return new IntervalIndex<>(annotations, document.Annotation::getStartNode, document.Annotation::getEndNode);
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Intervals sharing at least one character with the region, ordered by
+     * start. An empty region overlaps the intervals strictly around it.
+     */
+    public List<T> overlapping(long start, long end) {
+        List<T> found = new ArrayList<>();
+        overlapping(0, items.length, upperBound(end - 1), start, found);
+        return found;
+    }
+
+    /**
+     * Intervals containing the whole region, ordered by start.
+     */
+    public List<T> containing(long start, long end) {
+        List<T> found = new ArrayList<>();
+        containing(0, items.length, upperBound(start), end, found, false);
+        return found;
+    }
+
+    public boolean anyContaining(long start, long end) {
+        return containing(0, items.length, upperBound(start), end, null, true);
+    }
+
+    /**
+     * Intervals with exactly the region's span.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> coextensive(long start, long end) {
+        int from = lowerBound(start, end);
+        List<T> found = new ArrayList<>(1);
+        for (int i = from; i < items.length && starts[i] == start && ends[i] == end; i++) {
+            found.add((T) items[i]);
+        }
+        return found.isEmpty() ? Collections.<T>emptyList() : found;
+    }
+
+    private long augment(int from, int to) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (from + to) >>> 1;
+        long max = Math.max(ends[mid], Math.max(augment(from, mid), augment(mid + 1, to)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * Intervals of the subtree [from, to) below the limit that end after the
+     * start; the intervals below the limit start before the region ends.
+     */
+    @SuppressWarnings("unchecked")
+    private void overlapping(int from, int to, int limit, long start, List<T> found) {
+        if (from >= to || from >= limit) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        if (maxEnds[mid] <= start) {
+            return;
+        }
+        overlapping(from, mid, limit, start, found);
+        if (mid < limit && ends[mid] > start) {
+            found.add((T) items[mid]);
+        }
+        overlapping(mid + 1, to, limit, start, found);
+    }
+
+    /**
+     * Intervals of the subtree [from, to) below the limit that end at or
+     * after the end; the intervals below the limit start at or before the
+     * region start. With {@code first} it stops at the first one found.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean containing(int from, int to, int limit, long end, List<T> found, boolean first) {
+        if (from >= to || from >= limit) {
+            return false;
+        }
+        int mid = (from + to) >>> 1;
+        if (maxEnds[mid] < end) {
+            return false;
+        }
+        if (containing(from, mid, limit, end, found, first) && first) {
+            return true;
+        }
+        if (mid < limit && ends[mid] >= end) {
+            if (first) {
+                return true;
+            }
+            found.add((T) items[mid]);
+        }
+        return containing(mid + 1, to, limit, end, found, first);
+    }
+
+    /**
+     * Number of intervals starting at or before the offset.
+     */
+    private int upperBound(long offset) {
+        int from = 0;
+        int to = starts.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (starts[mid] <= offset) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * First interval not ordered before the span.
+     */
+    private int lowerBound(long start, long end) {
+        int from = 0;
+        int to = starts.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (starts[mid] < start || (starts[mid] == start && ends[mid] < end)) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    @Override
+    public String toString() {
+        return "IntervalIndex{size=" + items.length + "}";
+    }
+}
@@ -0,0 +1,126 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static net.myrts.gate.Asserts.assertCoextensive;
+import static net.myrts.gate.Asserts.assertContainedIn;
+import static net.myrts.gate.Asserts.assertNoOverlap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the interval index and the span assertions built on it.
+ */
+public class IntervalIndexTest {
+    private static final Logger LOG = LoggerFactory.getLogger(IntervalIndexTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int INTERVALS = 2000;
+
+    @Rule
+    public GateResources resources = new GateResources();
+
+    @Test
+    public void shouldMatchLinearScan() {
+        // given
+        Random random = new Random(42);
+        document.AnnotationSet annotationSet = new document.AnnotationSet();
+        for (int i = 0; i < INTERVALS; i++) {
+            long start = random.nextInt(10000);
+            annotationSet.getAnnotation().add(annotation("Span", start, start + random.nextInt(i % 10 == 0 ? 500 : 20)));
+        }
+
+        // when
+        IntervalIndex<document.Annotation> index = IntervalIndex.of(annotationSet, "Span");
+
+        // then
+        assertEquals(INTERVALS, index.size());
+        for (int query = 0; query < 500; query++) {
+            long start = random.nextInt(10500);
+            long end = start + random.nextInt(50);
+            List<document.Annotation> overlapping = new ArrayList<>();
+            List<document.Annotation> containing = new ArrayList<>();
+            List<document.Annotation> coextensive = new ArrayList<>();
+            for (document.Annotation annotation : annotationSet.getAnnotation()) {
+                if (annotation.getStartNode() < end && start < annotation.getEndNode()) {
+                    overlapping.add(annotation);
+                }
+                if (annotation.getStartNode() <= start && end <= annotation.getEndNode()) {
+                    containing.add(annotation);
+                }
+                if (annotation.getStartNode() == start && annotation.getEndNode() == end) {
+                    coextensive.add(annotation);
+                }
+            }
+            assertSameElements(overlapping, index.overlapping(start, end));
+            assertSameElements(containing, index.containing(start, end));
+            assertEquals(!containing.isEmpty(), index.anyContaining(start, end));
+            assertSameElements(coextensive, index.coextensive(start, end));
+        }
+    }
+
+    @Test
+    public void shouldAssertSpansOfAnnotatedDocument() throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        gate.AnnotationSet annotations = corpus.get(0).getAnnotations();
+
+        assertTrue(annotations.get("Person").size() > 0);
+        assertContainedIn(annotations, "Person", "Sentence");
+        assertContainedIn(annotations, "Token", "Sentence");
+        assertNoOverlap(annotations, "Location", "Person");
+        assertCoextensive(annotations, "Person", "Person");
+    }
+
+    @Test
+    public void shouldReportFailingSpans() throws Exception {
+        GateRuntime.init();
+        Document doc = Factory.newDocument("Hepburn lives in Louisville, Kentucky.");
+        gate.AnnotationSet annotations = doc.getAnnotations();
+        annotations.add(0L, 7L, "Person", Factory.newFeatureMap());
+        annotations.add(0L, 16L, "Sentence", Factory.newFeatureMap());
+        annotations.add(17L, 37L, "Location", Factory.newFeatureMap());
+        annotations.add(17L, 27L, "Person", Factory.newFeatureMap());
+
+        assertFails(() -> assertContainedIn(annotations, "Person", "Sentence"), "1 of 2 Person annotations are not inside a Sentence: [17-27]");
+        assertFails(() -> assertNoOverlap(annotations, "Location", "Person"), "1 of 1 Location annotations are overlapping a Person: [17-37]");
+        assertFails(() -> assertCoextensive(annotations, "Location", "Person"), "1 of 1 Location annotations are without a coextensive Person: [17-37]");
+    }
+
+    private static void assertFails(Runnable assertion, String message) {
+        try {
+            assertion.run();
+        } catch (AssertionError e) {
+            LOG.info(e.getMessage());
+            assertEquals(message, e.getMessage());
+            return;
+        }
+        fail("Expected failure " + message);
+    }
+
+    private static void assertSameElements(List<document.Annotation> expected, List<document.Annotation> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+    }
+
+    private static document.Annotation annotation(String type, long start, long end) {
+        document.Annotation annotation = new document.Annotation();
+        annotation.setType(type);
+        annotation.setStartNode(start);
+        annotation.setEndNode(end);
+        return annotation;
+    }
+}
@@ -0,0 +1,145 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.creole.ResourceInstantiationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Loads large plain text files as documents without reading them through
+ * streams. The file is memory-mapped a chunk at a time and decoded straight
+ * into one char array sized for the whole file, which is copied once into
+ * the content string; the mapped bytes stay outside the heap. GATE reading
+ * the same file from its {@code sourceUrl} grows a {@code StringBuffer} by
+ * doubling and then copies it into the content, so loading peaks at several
+ * copies of the text.
+ * <p>
+ * Documents are not markup aware and the original content is the content
+ * itself, so {@link AnnotationExtractor} and
+ * {@link ContentAnnotation#getMarkedTextRegion()} give views of the loaded
+ * text without copying it.
+ */
+public class MappedDocumentLoader {
+
+    private static final int DEFAULT_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Charset charset;
+    private final int chunkBytes;
+
+    public MappedDocumentLoader() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public MappedDocumentLoader(Charset charset) {
+        this(charset, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Loader mapping at most {@code chunkBytes} of the file at a time.
+     */
+    public MappedDocumentLoader(Charset charset, int chunkBytes) {
+        if (chunkBytes < 16) {
+            throw new IllegalArgumentException("Chunk should hold at least 16 bytes, got " + chunkBytes);
+        }
+        this.charset = charset;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public Document load(File file) throws ResourceInstantiationException {
+        String content;
+        try {
+            content = read(file);
+        } catch (IOException e) {
+            throw new ResourceInstantiationException("Cannot load " + file, e);
+        }
+        FeatureMap params = Factory.newFeatureMap();
+        params.put("stringContent", content);
+        params.put("markupAware", false);
+        params.put("preserveOriginalContent", false);
+        params.put("collectRepositioningInfo", false);
+        params.put("encoding", charset.name());
+        Document doc = (Document) Factory.createResource("gate.corpora.DocumentImpl", params,
+                Factory.newFeatureMap(), file.getName());
+        try {
+            doc.setSourceUrl(file.toURI().toURL());
+            doc.getFeatures().put("gate.SourceURL", doc.getSourceUrl().toExternalForm());
+        } catch (MalformedURLException e) {
+            Factory.deleteResource(doc);
+            throw new ResourceInstantiationException("Cannot load " + file, e);
+        }
+        return doc;
+    }
+
+    /**
+     * Lazy source loading the files one at a time, see
+     * {@link StreamingCorpusRunner}.
+     */
+    public DocumentSource documentSource(Iterator<File> files) {
+        return () -> files.hasNext() ? load(files.next()) : null;
+    }
+
+    /**
+     * Decode the file, a leading byte order mark is dropped. Malformed input
+     * fails instead of being replaced, so a wrong charset does not go
+     * unnoticed.
+     */
+    public String read(File file) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                // the decoder would need an end of input call before it could be flushed
+                return "";
+            }
+            double maxChars = Math.ceil(size * (double) decoder.maxCharsPerByte());
+            if (maxChars > Integer.MAX_VALUE - 8) {
+                throw new IOException(file + " of " + size + " bytes does not fit in a document");
+            }
+            CharBuffer out = CharBuffer.allocate((int) maxChars);
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(chunkBytes, size - position);
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                check(decoder.decode(chunk, out, last));
+                if (!last && chunk.position() == 0) {
+                    throw new CharacterCodingException();
+                }
+                // an incomplete character at the chunk end is decoded with the next chunk
+                position += chunk.position();
+                if (last && chunk.hasRemaining()) {
+                    throw new CharacterCodingException();
+                }
+            }
+            check(decoder.flush(out));
+            char[] chars = out.array();
+            int start = out.position() > 0 && chars[0] == BYTE_ORDER_MARK ? 1 : 0;
+            return new String(chars, start, out.position() - start);
+        }
+    }
+
+    private static void check(CoderResult result) throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+}
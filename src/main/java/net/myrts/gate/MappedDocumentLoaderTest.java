@@ -0,0 +1,106 @@
+package net.myrts.gate;
+
+import gate.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test cases for memory-mapped document loading.
+ */
+public class MappedDocumentLoaderTest {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedDocumentLoaderTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public GateResources resources = new GateResources();
+
+    @Test
+    public void shouldDecodeCharactersSplitAcrossChunks() throws Exception {
+        // given
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append("Zürich – ☃ 𝄞 ").append(i).append('\n');
+        }
+        File file = folder.newFile("multibyte.txt");
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        // when
+        String read = new MappedDocumentLoader(StandardCharsets.UTF_8, 16).read(file);
+
+        // then
+        assertEquals(text.toString(), read);
+    }
+
+    @Test
+    public void shouldDropByteOrderMark() throws Exception {
+        File file = folder.newFile("bom.txt");
+        Files.write(file.toPath(), "\uFEFFLouisville".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("Louisville", new MappedDocumentLoader().read(file));
+    }
+
+    @Test
+    public void shouldLoadEmptyFile() throws Exception {
+        File file = folder.newFile("empty.txt");
+
+        Document doc = new MappedDocumentLoader().load(file);
+
+        assertEquals("", doc.getContent().toString());
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void shouldRejectMalformedInput() throws Exception {
+        File file = folder.newFile("latin1.txt");
+        Files.write(file.toPath(), "Zürich".getBytes(StandardCharsets.ISO_8859_1));
+
+        new MappedDocumentLoader().read(file);
+    }
+
+    @Test
+    public void shouldAnnotateLikeUrlLoadedDocument() throws Exception {
+        File file = new File("src/main/resources/corpus/1.txt");
+        ControllerPool pool = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME);
+        Document expected = pool.annotate(new CorpusConfig(Collections.singletonList(file.toURI().toURL()))).get(0);
+        MappedDocumentLoader loader = new MappedDocumentLoader(StandardCharsets.UTF_8, 1024);
+
+        int annotated = new StreamingCorpusRunner(pool).annotate(loader.documentSource(Collections.singletonList(file).iterator()), mapped -> {
+            assertEquals(expected.getContent().toString(), mapped.getContent().toString());
+            assertEquals(file.getName(), mapped.getName());
+            List<ContentAnnotation> locations = AnnotationExtractor.getContentAnnotations("Location", mapped, mapped.getAnnotations());
+            assertFalse(locations.isEmpty());
+            assertEquals(markedTexts(AnnotationExtractor.getContentAnnotations("Location", expected, expected.getAnnotations())),
+                    markedTexts(locations));
+            LOG.info("Mapped document " + mapped.getName() + " has " + locations.size() + " locations");
+        });
+
+        assertEquals(1, annotated);
+    }
+
+    private static List<String> markedTexts(List<ContentAnnotation> annotations) {
+        List<String> texts = new ArrayList<>();
+        for (ContentAnnotation annotation : annotations) {
+            texts.add(annotation.getMarkedTextRegion().toString());
+        }
+        return texts;
+    }
+}
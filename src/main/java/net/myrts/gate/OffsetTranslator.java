@@ -0,0 +1,175 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.GateConstants;
+import gate.corpora.RepositioningInfo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Translates offsets of the extracted document content back to the original
+ * content, with the same results as
+ * {@link RepositioningInfo#getOriginalPos(long, boolean)}. The repositioning
+ * records are copied once into primitive arrays, so a single offset is found
+ * by binary search and a batch of sorted offsets in one forward sweep,
+ * instead of walking the records for every offset.
+ * <p>
+ * {@link RepositioningInfo} returns the first record, in list order, whose
+ * current end is past the offset. The translator searches the running
+ * maximum of the current ends, which finds the same record for any record
+ * order.
+ */
+public final class OffsetTranslator {
+
+    private static final Map<Document, OffsetTranslator> TRANSLATORS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final RepositioningInfo info;
+    private final int records;
+    private final long[] currentStarts;
+    private final long[] currentEnds;
+    private final long[] originalStarts;
+    private final long[] originalEnds;
+    private final long[] maxCurrentEnds;
+
+    public OffsetTranslator(RepositioningInfo info) {
+        this.info = info;
+        this.records = info == null ? 0 : info.size();
+        this.currentStarts = new long[records];
+        this.currentEnds = new long[records];
+        this.originalStarts = new long[records];
+        this.originalEnds = new long[records];
+        this.maxCurrentEnds = new long[records];
+        long maxCurrentEnd = Long.MIN_VALUE;
+        for (int i = 0; i < records; i++) {
+            RepositioningInfo.PositionInfo positionInfo = info.get(i);
+            currentStarts[i] = positionInfo.getCurrentPosition();
+            currentEnds[i] = positionInfo.getCurrentPosition() + positionInfo.getCurrentLength();
+            originalStarts[i] = positionInfo.getOriginalPosition();
+            originalEnds[i] = positionInfo.getOriginalPosition() + positionInfo.getOriginalLength();
+            maxCurrentEnd = Math.max(maxCurrentEnd, currentEnds[i]);
+            maxCurrentEnds[i] = maxCurrentEnd;
+        }
+    }
+
+    /**
+     * Translator of the document's repositioning info, built on first use and
+     * kept until the document is collected or its repositioning info changes.
+     * Documents without repositioning info get a translator that returns
+     * offsets unchanged.
+     */
+    public static OffsetTranslator forDocument(Document doc) {
+        RepositioningInfo info = (RepositioningInfo)
+                doc.getFeatures().get(GateConstants.DOCUMENT_REPOSITIONING_INFO_FEATURE_NAME);
+        OffsetTranslator translator = TRANSLATORS.get(doc);
+        if (translator == null || !translator.isTranslatorOf(info)) {
+            translator = new OffsetTranslator(info);
+            TRANSLATORS.put(doc, translator);
+        }
+        return translator;
+    }
+
+    /**
+     * Rebuild the repositioning info of a document loaded from GATE XML. The
+     * XML keeps every record only as its string form {@code (originalPos,
+     * originalLength, currentPos, currentLength)}, so the reloaded feature
+     * holds strings where a translator expects records.
+     */
+    static void restoreRepositioningInfo(Document doc) {
+        Object feature = doc.getFeatures().get(GateConstants.DOCUMENT_REPOSITIONING_INFO_FEATURE_NAME);
+        if (!(feature instanceof List)) {
+            return;
+        }
+        RepositioningInfo restored = new RepositioningInfo();
+        for (Object record : (List<?>) feature) {
+            if (record instanceof RepositioningInfo.PositionInfo) {
+                RepositioningInfo.PositionInfo positionInfo = (RepositioningInfo.PositionInfo) record;
+                restored.add(restored.new PositionInfo(positionInfo.getOriginalPosition(), positionInfo.getOriginalLength(),
+                        positionInfo.getCurrentPosition(), positionInfo.getCurrentLength()));
+                continue;
+            }
+            String[] fields = String.valueOf(record).replaceAll("[()\\s]", "").split(",");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Not a repositioning record: " + record);
+            }
+            // records are kept in list order, addPositionInfo would reorder equal original positions
+            restored.add(restored.new PositionInfo(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+        }
+        doc.getFeatures().put(GateConstants.DOCUMENT_REPOSITIONING_INFO_FEATURE_NAME, restored);
+    }
+
+    /**
+     * Original position of the offset or -1 when it has none. With
+     * {@code end} set, an offset at the end of a record is translated to the
+     * end of its original text, as for the end of an annotation.
+     */
+    public long getOriginalPos(long offset, boolean end) {
+        if (info == null || records == 0) {
+            return offset;
+        }
+        return translate(offset, end, firstRecord(offset, end));
+    }
+
+    /**
+     * Translates offsets sorted in ascending order into {@code originals} in
+     * one sweep over the records. Both arrays may be the same.
+     */
+    public void getOriginalPos(long[] offsets, int length, boolean end, long[] originals) {
+        if (info == null || records == 0) {
+            System.arraycopy(offsets, 0, originals, 0, length);
+            return;
+        }
+        int record = 0;
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            long offset = offsets[i];
+            if (offset < previous) {
+                throw new IllegalArgumentException("Offsets are not sorted at " + i + ": " + offset + " after " + previous);
+            }
+            previous = offset;
+            while (record < records && !reaches(record, offset, end)) {
+                record++;
+            }
+            originals[i] = translate(offset, end, record);
+        }
+    }
+
+    private boolean isTranslatorOf(RepositioningInfo info) {
+        return this.info == info && records == (info == null ? 0 : info.size());
+    }
+
+    /**
+     * First record whose running maximum current end is past the offset, or
+     * at it for an end offset; {@code records} when no record is.
+     */
+    private int firstRecord(long offset, boolean end) {
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (reaches(middle, offset, end)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean reaches(int record, long offset, boolean end) {
+        return end ? maxCurrentEnds[record] >= offset : maxCurrentEnds[record] > offset;
+    }
+
+    private long translate(long offset, boolean end, int record) {
+        if (record == records) {
+            return -1L;
+        }
+        if (end && offset == currentEnds[record]) {
+            return originalEnds[record];
+        }
+        return offset < currentStarts[record] ? -1L : originalStarts[record] + offset - currentStarts[record];
+    }
+}
@@ -0,0 +1,139 @@
+package net.myrts.gate;
+
+import gate.Document;
+import gate.Factory;
+import gate.GateConstants;
+import gate.corpora.RepositioningInfo;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases and benchmark for the precomputed offset translation.
+ */
+public class OffsetTranslatorTest {
+    private static final Logger LOG = LoggerFactory.getLogger(OffsetTranslatorTest.class);
+
+    private static final int RECORDS = 20000;
+
+    private static final int OFFSETS = 100000;
+
+    @Test
+    public void shouldTranslateAsRepositioningInfo() {
+        // given
+        RepositioningInfo info = markupRepositioningInfo(200, new Random(7));
+        OffsetTranslator translator = new OffsetTranslator(info);
+        long last = lastCurrentEnd(info) + 5;
+
+        // when
+        long[] offsets = new long[(int) last];
+        long[] originals = new long[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = i;
+        }
+        translator.getOriginalPos(offsets, offsets.length, true, originals);
+
+        // then
+        for (long offset = 0; offset < last; offset++) {
+            assertEquals("start " + offset, info.getOriginalPos(offset), translator.getOriginalPos(offset, false));
+            assertEquals("end " + offset, info.getOriginalPos(offset, true), translator.getOriginalPos(offset, true));
+            assertEquals("bulk end " + offset, info.getOriginalPos(offset, true), originals[(int) offset]);
+        }
+    }
+
+    @Test
+    public void shouldTranslateRecordsOutOfCurrentOrder() {
+        RepositioningInfo info = new RepositioningInfo();
+        info.addPositionInfo(0, 10, 20, 10);
+        info.addPositionInfo(15, 10, 0, 10);
+        info.addPositionInfo(30, 5, 10, 5);
+        OffsetTranslator translator = new OffsetTranslator(info);
+
+        for (long offset = 0; offset < 35; offset++) {
+            assertEquals("start " + offset, info.getOriginalPos(offset), translator.getOriginalPos(offset, false));
+            assertEquals("end " + offset, info.getOriginalPos(offset, true), translator.getOriginalPos(offset, true));
+        }
+    }
+
+    @Test
+    public void shouldCacheTranslatorPerDocument() throws Exception {
+        GateRuntime.init();
+        Document doc = Factory.newDocument("Hepburn met Griswold");
+        RepositioningInfo info = markupRepositioningInfo(3, new Random(1));
+        doc.getFeatures().put(GateConstants.DOCUMENT_REPOSITIONING_INFO_FEATURE_NAME, info);
+
+        OffsetTranslator translator = OffsetTranslator.forDocument(doc);
+
+        assertSame(translator, OffsetTranslator.forDocument(doc));
+        info.addPositionInfo(1000, 5, 1000, 5);
+        assertNotSame("Changed repositioning info should be translated again", translator, OffsetTranslator.forDocument(doc));
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void benchmarkTranslatorAgainstRepositioningInfo() {
+        Random random = new Random(42);
+        RepositioningInfo info = markupRepositioningInfo(RECORDS, random);
+        long last = lastCurrentEnd(info);
+        long[] offsets = new long[OFFSETS];
+        for (int i = 0; i < OFFSETS; i++) {
+            offsets[i] = (long) (random.nextDouble() * last);
+        }
+        Arrays.sort(offsets);
+
+        long start = System.nanoTime();
+        long infoSum = 0;
+        for (long offset : offsets) {
+            infoSum += info.getOriginalPos(offset);
+        }
+        long infoNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        OffsetTranslator translator = new OffsetTranslator(info);
+        long[] originals = new long[OFFSETS];
+        translator.getOriginalPos(offsets, OFFSETS, false, originals);
+        long translatorSum = 0;
+        for (long original : originals) {
+            translatorSum += original;
+        }
+        long translatorNanos = System.nanoTime() - start;
+
+        LOG.info("Translating " + OFFSETS + " offsets over " + RECORDS + " records: RepositioningInfo " + infoNanos / 1000000
+                + " ms, translator " + translatorNanos / 1000000 + " ms including build");
+        assertEquals(infoSum, translatorSum);
+        assertTrue("Translator should be faster than walking the records", translatorNanos < infoNanos);
+    }
+
+    /**
+     * Records of text kept between markup tags that were removed, as a
+     * markup aware document would have.
+     */
+    private static RepositioningInfo markupRepositioningInfo(int records, Random random) {
+        RepositioningInfo info = new RepositioningInfo();
+        long original = 0;
+        long current = 0;
+        for (int i = 0; i < records; i++) {
+            original += 1 + random.nextInt(12);
+            long length = random.nextInt(30);
+            // entities shrink the extracted text
+            long currentLength = random.nextInt(10) == 0 && length > 0 ? length - 1 : length;
+            info.addPositionInfo(original, length, current, currentLength);
+            original += length;
+            current += currentLength;
+        }
+        return info;
+    }
+
+    private static long lastCurrentEnd(RepositioningInfo info) {
+        RepositioningInfo.PositionInfo last = info.get(info.size() - 1);
+        return last.getCurrentPosition() + last.getCurrentLength();
+    }
+}
@@ -0,0 +1,295 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Annotates a multi-document configuration on several threads. The documents
+ * are split into shards of about the same size in bytes, each shard runs on
+ * its own thread with a controller borrowed from the pool, and the annotated
+ * documents are merged into one corpus in the configured order.
+ * <p>
+ * Throughput of every shard of the last run is kept in {@link ShardReport}s.
+ */
+public class ParallelCorpusRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelCorpusRunner.class);
+
+    private final ControllerPool pool;
+    private final int shards;
+
+    private volatile List<ShardReport> reports = Collections.emptyList();
+
+    public ParallelCorpusRunner(ControllerPool pool, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shard count should be positive, got " + shards);
+        }
+        this.pool = pool;
+        this.shards = shards;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Annotate the configured documents, at most one shard per document.
+     * The caller deletes the returned corpus and its documents.
+     */
+    public Corpus annotate(CorpusConfig config) throws GateException, InterruptedException {
+        List<URL> urls = config.getDocumentUrls();
+        long[] sizes = new long[urls.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = size(urls.get(i));
+        }
+        List<List<Integer>> assignment = assign(sizes, Math.min(shards, urls.size()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, assignment.size()));
+        List<Future<Corpus>> results = new ArrayList<>();
+        ShardCorpora corpora = new ShardCorpora(assignment.size());
+        ShardReport[] shardReports = new ShardReport[assignment.size()];
+        try {
+            for (int shard = 0; shard < assignment.size(); shard++) {
+                final int index = shard;
+                List<URL> shardUrls = new ArrayList<>();
+                long bytes = 0;
+                for (int document : assignment.get(shard)) {
+                    shardUrls.add(urls.get(document));
+                    bytes += sizes[document];
+                }
+                final long shardBytes = bytes;
+                CorpusConfig shardConfig = new CorpusConfig(shardUrls, config.isMarkupAware(),
+                        config.isPreserveOriginalContent(), config.isCollectRepositioningInfo());
+                results.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    Corpus corpus = pool.annotate(shardConfig);
+                    shardReports[index] = new ShardReport(index, shardUrls.size(), shardBytes, System.nanoTime() - start);
+                    corpora.finish(index, corpus);
+                    return corpus;
+                }));
+            }
+            Corpus merged = merge(urls.size(), assignment, collect(results, corpora));
+            reports = Collections.unmodifiableList(Arrays.asList(shardReports));
+            LOG.info(report());
+            return merged;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Throughput of every shard of the last run.
+     */
+    public List<ShardReport> getShardReports() {
+        return reports;
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder("Parallel corpus run with ").append(reports.size()).append(" shard(s):");
+        for (ShardReport shardReport : reports) {
+            sb.append("\n  ").append(shardReport);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Shard corpora of every task. When a task fails or the caller is
+     * interrupted the pending tasks are cancelled and the shard corpora,
+     * finished so far or later, are deleted.
+     */
+    private static List<Corpus> collect(List<Future<Corpus>> results, ShardCorpora corpora) throws GateException, InterruptedException {
+        try {
+            for (Future<Corpus> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            abandon(results, corpora);
+            throw e.getCause() instanceof GateException ? (GateException) e.getCause()
+                    : new GateException("Shard annotation failed", e.getCause());
+        } catch (InterruptedException e) {
+            abandon(results, corpora);
+            throw e;
+        }
+        return corpora.get();
+    }
+
+    private static void abandon(List<Future<Corpus>> results, ShardCorpora corpora) {
+        corpora.abandon();
+        for (Future<Corpus> result : results) {
+            result.cancel(true);
+        }
+    }
+
+    private static Corpus merge(int documents, List<List<Integer>> assignment, List<Corpus> corpora) throws GateException {
+        Document[] ordered = new Document[documents];
+        for (int shard = 0; shard < corpora.size(); shard++) {
+            Corpus corpus = corpora.get(shard);
+            List<Integer> indexes = assignment.get(shard);
+            for (int i = 0; i < indexes.size(); i++) {
+                ordered[indexes.get(i)] = corpus.get(i);
+            }
+            corpus.clear();
+            Factory.deleteResource(corpus);
+        }
+        Corpus merged = Factory.newCorpus("StandAloneAnnie corpus");
+        merged.addAll(Arrays.asList(ordered));
+        return merged;
+    }
+
+    /**
+     * Assigns every document, largest first, to the shard with the fewest
+     * bytes so far; each shard keeps its documents in configured order.
+     */
+    static List<List<Integer>> assign(long[] sizes, int shards) {
+        Integer[] bySize = new Integer[sizes.length];
+        for (int i = 0; i < bySize.length; i++) {
+            bySize[i] = i;
+        }
+        Arrays.sort(bySize, (a, b) -> Long.compare(sizes[b], sizes[a]));
+        long[] load = new long[shards];
+        List<List<Integer>> assignment = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            assignment.add(new ArrayList<>());
+        }
+        for (int document : bySize) {
+            int lightest = 0;
+            for (int shard = 1; shard < shards; shard++) {
+                if (load[shard] < load[lightest]) {
+                    lightest = shard;
+                }
+            }
+            load[lightest] += sizes[document];
+            assignment.get(lightest).add(document);
+        }
+        for (List<Integer> shard : assignment) {
+            Collections.sort(shard);
+        }
+        return assignment;
+    }
+
+    private static long size(URL url) throws GateException {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI()).length();
+            }
+            URLConnection connection = url.openConnection();
+            return Math.max(0, connection.getContentLengthLong());
+        } catch (IOException | URISyntaxException e) {
+            throw new GateException("Cannot read " + url, e);
+        }
+    }
+
+    /**
+     * Corpora of the finished shards. Once abandoned, the finished corpora
+     * and those of shards finishing afterwards are deleted.
+     */
+    private static final class ShardCorpora {
+        private final Corpus[] corpora;
+        private boolean abandoned;
+
+        ShardCorpora(int shards) {
+            corpora = new Corpus[shards];
+        }
+
+        void finish(int shard, Corpus corpus) {
+            synchronized (this) {
+                if (!abandoned) {
+                    corpora[shard] = corpus;
+                    return;
+                }
+            }
+            deleteWithDocuments(corpus);
+        }
+
+        void abandon() {
+            List<Corpus> finished = new ArrayList<>();
+            synchronized (this) {
+                abandoned = true;
+                for (int shard = 0; shard < corpora.length; shard++) {
+                    if (corpora[shard] != null) {
+                        finished.add(corpora[shard]);
+                        corpora[shard] = null;
+                    }
+                }
+            }
+            for (Corpus corpus : finished) {
+                deleteWithDocuments(corpus);
+            }
+        }
+
+        synchronized List<Corpus> get() {
+            return Arrays.asList(corpora.clone());
+        }
+    }
+
+    private static void deleteWithDocuments(Corpus corpus) {
+        for (Document doc : new ArrayList<>(corpus)) {
+            Factory.deleteResource(doc);
+        }
+        Factory.deleteResource(corpus);
+    }
+
+    /**
+     * Documents, source bytes and wall time of one shard.
+     */
+    public static final class ShardReport {
+        private final int shard;
+        private final int documents;
+        private final long bytes;
+        private final long nanos;
+
+        ShardReport(int shard, int documents, long bytes, long nanos) {
+            this.shard = shard;
+            this.documents = documents;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getDocsPerSecond() {
+            return nanos == 0 ? 0 : documents * 1e9 / nanos;
+        }
+
+        public double getBytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("shard %d: %d doc(s), %d bytes in %d ms, %.2f docs/sec, %.0f bytes/sec",
+                    shard, documents, bytes, nanos / 1000000, getDocsPerSecond(), getBytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.util.GateException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for sharded corpus annotation.
+ */
+public class ParallelCorpusRunnerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelCorpusRunnerTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int DOCUMENTS = 6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldMergeShardsInConfiguredOrder() throws Exception {
+        // given
+        List<URL> urls = createDocuments();
+        CorpusConfig config = new CorpusConfig(urls);
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 2);
+        ParallelCorpusRunner runner = new ParallelCorpusRunner(pool, 3);
+        try {
+            // when
+            Corpus sequential = pool.annotate(config);
+            Corpus parallel = runner.annotate(config);
+
+            // then
+            assertEquals(DOCUMENTS, parallel.size());
+            for (int i = 0; i < DOCUMENTS; i++) {
+                assertEquals(urls.get(i), parallel.get(i).getSourceUrl());
+                assertEquals(sequential.get(i).getAnnotations().size(), parallel.get(i).getAnnotations().size());
+            }
+            assertEquals(3, runner.getShardReports().size());
+            int documents = 0;
+            for (ParallelCorpusRunner.ShardReport report : runner.getShardReports()) {
+                documents += report.getDocuments();
+            }
+            assertEquals(DOCUMENTS, documents);
+            LOG.info(runner.report());
+            delete(sequential);
+            delete(parallel);
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldDeleteFinishedShardsWhenShardFails() throws Exception {
+        List<URL> urls = createDocuments();
+        // the first document of its shard, so the failing shard loads no document
+        urls.add(0, new File(folder.getRoot(), "missing.txt").toURI().toURL());
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 2);
+        int loaded = documentCount();
+        try {
+            new ParallelCorpusRunner(pool, 3).annotate(new CorpusConfig(urls));
+            fail("Missing document should fail its shard");
+        } catch (GateException e) {
+            LOG.info("Shard failed: " + e.getMessage());
+            awaitShards(pool, loaded);
+        } finally {
+            pool.close();
+        }
+        assertEquals(loaded, documentCount());
+    }
+
+    @Test
+    public void shouldDeleteShardsWhenInterrupted() throws Exception {
+        List<URL> urls = createDocuments();
+        ControllerPool pool = new ControllerPool(GateRuntime.getController(PLUGIN_NAME, PROJECT_FILE_NAME), 2);
+        int loaded = documentCount();
+        try {
+            Thread.currentThread().interrupt();
+            new ParallelCorpusRunner(pool, 3).annotate(new CorpusConfig(urls));
+            fail("Interrupted run should fail");
+        } catch (InterruptedException e) {
+            awaitShards(pool, loaded);
+        } finally {
+            Thread.interrupted();
+            pool.close();
+        }
+        assertEquals(loaded, documentCount());
+    }
+
+    @Test
+    public void shouldBalanceShardsByBytes() {
+        List<List<Integer>> assignment = ParallelCorpusRunner.assign(new long[]{100, 10, 60, 50, 30}, 2);
+
+        assertEquals(Arrays.asList(0, 4), assignment.get(0));
+        assertEquals(Arrays.asList(1, 2, 3), assignment.get(1));
+    }
+
+    /**
+     * Copies of the corpus document alternating with short documents, so
+     * shards differ in size.
+     */
+    private List<URL> createDocuments() throws Exception {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            File file = folder.newFile(i + ".txt");
+            if (i % 2 == 0) {
+                Files.copy(new File("src/main/resources/corpus/1.txt").toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.write(file.toPath(), ("Document " + i + " was written in Louisville, Kentucky.").getBytes(StandardCharsets.UTF_8));
+            }
+            urls.add(file.toURI().toURL());
+        }
+        return urls;
+    }
+
+    /**
+     * Shards still running delete their corpora when they finish, after
+     * returning their controllers to the pool.
+     */
+    private static void awaitShards(ControllerPool pool, int documents) throws Exception {
+        List<CorpusController> controllers = new ArrayList<>();
+        for (int i = 0; i < pool.getMaxSize(); i++) {
+            controllers.add(pool.borrow());
+        }
+        for (CorpusController controller : controllers) {
+            pool.release(controller);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (documentCount() > documents && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static int documentCount() throws GateException {
+        return Gate.getCreoleRegister().getLrInstances("gate.corpora.DocumentImpl").size();
+    }
+
+    private static void delete(Corpus corpus) {
+        for (Document doc : new ArrayList<>(corpus)) {
+            Factory.deleteResource(doc);
+        }
+        Factory.deleteResource(corpus);
+    }
+}
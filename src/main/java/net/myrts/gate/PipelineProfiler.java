@@ -0,0 +1,468 @@
+package net.myrts.gate;
+
+import com.sun.management.ThreadMXBean;
+import gate.Controller;
+import gate.Document;
+import gate.Gate;
+import gate.LanguageAnalyser;
+import gate.ProcessingResource;
+import gate.Resource;
+import gate.creole.AbstractLanguageAnalyser;
+import gate.creole.AnalyserRunningStrategy;
+import gate.creole.ConditionalSerialController;
+import gate.creole.ExecutionException;
+import gate.creole.ResourceInstantiationException;
+import gate.creole.RunningStrategy;
+import gate.creole.SerialController;
+import gate.creole.metadata.CreoleResource;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Wall time and allocated bytes of every processing resource of a serial
+ * application, per document. {@link #attach} replaces each PR of the controller with a
+ * {@link TimedAnalyser} running and timing it, running strategies of
+ * conditional controllers are kept. Times are recorded into a
+ * {@link LatencyHistogram} per PR name, so duplicates of one application
+ * attached to the same profiler share their histograms.
+ * <pre>
+ *    PipelineProfiler profiler = new PipelineProfiler();
+ *    profiler.attach(controller);
+ *    controller.execute();
+ *    profiler.writeReport(new File("target/pipeline-profile.json"));
+ *    profiler.detach(controller);
+ * </pre>
+ * Controllers are detached before they are deleted or duplicated.
+ */
+public class PipelineProfiler {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineProfiler.class);
+
+    private static final ThreadMXBean THREADS = threadMXBean();
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<Controller, List<ProcessingResource>> attached = new IdentityHashMap<>();
+    private final Map<Document, long[]> documentAllocations = new WeakHashMap<>();
+    private final LatencyHistogram documentAllocated = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> retainedBySet = new TreeMap<>();
+    private final RetainedSizeEstimator estimator;
+
+    public PipelineProfiler() {
+        this(new RetainedSizeEstimator());
+    }
+
+    public PipelineProfiler(RetainedSizeEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    /**
+     * Replace the PRs of the controller with timing wrappers.
+     */
+    public synchronized void attach(Controller controller) throws ResourceInstantiationException {
+        SerialController serial = serialController(controller);
+        if (attached.containsKey(controller)) {
+            return;
+        }
+        register();
+        List<ProcessingResource> originals = new ArrayList<>(serial.getPRs());
+        List<ProcessingResource> wrappers = new ArrayList<>();
+        for (ProcessingResource pr : originals) {
+            Stage stage = stages.get(pr.getName());
+            if (stage == null) {
+                stage = new Stage(stages.size(), pr.getName(), pr.getClass().getName());
+                stages.put(pr.getName(), stage);
+            }
+            TimedAnalyser timed = new TimedAnalyser();
+            timed.setName(pr.getName());
+            timed.pr = pr;
+            timed.stage = stage;
+            timed.init();
+            wrappers.add(timed);
+        }
+        replace(serial, wrappers);
+        attached.put(controller, originals);
+        LOG.info("Profiling " + originals.size() + " processing resources of " + controller.getName());
+    }
+
+    /**
+     * Put the original PRs back into the controller.
+     */
+    public synchronized void detach(Controller controller) {
+        List<ProcessingResource> originals = attached.remove(controller);
+        if (originals != null) {
+            replace(serialController(controller), originals);
+        }
+    }
+
+    public synchronized boolean isAttached(Controller controller) {
+        return attached.containsKey(controller);
+    }
+
+    /**
+     * Whether the PR is the original of a wrapper in an attached controller.
+     */
+    public synchronized boolean isWrapped(Resource resource) {
+        for (List<ProcessingResource> originals : attached.values()) {
+            if (originals.contains(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Histograms by PR name in pipeline order.
+     */
+    public synchronized Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        for (Stage stage : stages.values()) {
+            histograms.put(stage.name, stage.histogram);
+        }
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    public synchronized LatencyHistogram getHistogram(String prName) {
+        Stage stage = stages.get(prName);
+        return stage == null ? null : stage.histogram;
+    }
+
+    /**
+     * Name of the document the PR took longest on, null before a run.
+     */
+    public synchronized String getSlowestDocument(String prName) {
+        Stage stage = stages.get(prName);
+        return stage == null ? null : stage.slowestDocument;
+    }
+
+    /**
+     * Bytes allocated by the thread running the PR, per execution. Empty
+     * when the JVM does not count allocations per thread.
+     */
+    public synchronized LatencyHistogram getAllocationHistogram(String prName) {
+        Stage stage = stages.get(prName);
+        return stage == null ? null : stage.allocations;
+    }
+
+    /**
+     * Bytes allocated by each PR, in pipeline order, while processing the
+     * document. The document is held weakly.
+     */
+    public synchronized Map<String, Long> getAllocatedBytesByStage(Document doc) {
+        long[] allocated = documentAllocations.get(doc);
+        Map<String, Long> byStage = new LinkedHashMap<>();
+        for (Stage stage : stages.values()) {
+            byStage.put(stage.name, allocated == null || stage.index >= allocated.length ? 0L : allocated[stage.index]);
+        }
+        return byStage;
+    }
+
+    public synchronized long getAllocatedBytes(Document doc) {
+        long[] allocated = documentAllocations.get(doc);
+        long total = 0;
+        if (allocated != null) {
+            for (long bytes : allocated) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Estimate the retained size of the annotation sets of a processed
+     * document and add it, with the bytes allocated for the document, to
+     * the report.
+     */
+    public synchronized List<RetainedSizeEstimator.Footprint> recordRetained(Document doc) {
+        List<RetainedSizeEstimator.Footprint> footprints = estimator.estimate(doc);
+        for (RetainedSizeEstimator.Footprint footprint : footprints) {
+            LatencyHistogram histogram = retainedBySet.get(footprint.getName());
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                retainedBySet.put(footprint.getName(), histogram);
+            }
+            histogram.record(footprint.getBytes());
+        }
+        if (documentAllocations.containsKey(doc)) {
+            documentAllocated.record(getAllocatedBytes(doc));
+        }
+        return footprints;
+    }
+
+    /**
+     * Fails when the PRs allocated more than {@code maxAllocatedBytes} while
+     * processing the document, or its annotation sets are estimated to
+     * retain more than {@code maxRetainedBytes}. The message lists the
+     * bytes of every stage and annotation set.
+     */
+    public void assertWithinBudget(Document doc, long maxAllocatedBytes, long maxRetainedBytes) {
+        long allocated = getAllocatedBytes(doc);
+        List<RetainedSizeEstimator.Footprint> footprints = estimator.estimate(doc);
+        long retained = 0;
+        for (RetainedSizeEstimator.Footprint footprint : footprints) {
+            retained += footprint.getBytes();
+        }
+        if (allocated <= maxAllocatedBytes && retained <= maxRetainedBytes) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("Document ").append(doc.getName()).append(" over memory budget: allocated ")
+                .append(allocated / 1024).append(" KB of ").append(maxAllocatedBytes / 1024).append(" KB, retained ~")
+                .append(retained / 1024).append(" KB of ").append(maxRetainedBytes / 1024).append(" KB");
+        for (Map.Entry<String, Long> stage : getAllocatedBytesByStage(doc).entrySet()) {
+            message.append("\n  ").append(stage.getKey()).append(": allocated ").append(stage.getValue() / 1024).append(" KB");
+        }
+        for (RetainedSizeEstimator.Footprint footprint : footprints) {
+            message.append("\n  annotation set ").append(footprint);
+        }
+        fail(message.toString());
+    }
+
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder("Pipeline profile:");
+        for (Stage stage : stages.values()) {
+            sb.append("\n  ").append(stage.name).append(": ").append(stage.histogram);
+            if (stage.allocations.getCount() > 0) {
+                sb.append(String.format(", allocated mean=%.0f KB, max=%d KB", stage.allocations.getMean() / 1024,
+                        stage.allocations.getMax() / 1024));
+            }
+        }
+        for (Map.Entry<String, LatencyHistogram> set : retainedBySet.entrySet()) {
+            sb.append(String.format("%n  annotation set '%s': retained mean=%.0f KB, max=%d KB", set.getKey(),
+                    set.getValue().getMean() / 1024, set.getValue().getMax() / 1024));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Report of every PR in pipeline order, times in microseconds and
+     * allocations in bytes, followed by the allocations per document and
+     * the estimated retained bytes per annotation set name.
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"processingResources\": [");
+        String separator = "\n";
+        for (Stage stage : stages.values()) {
+            LatencyHistogram histogram = stage.histogram;
+            json.append(separator).append("    {");
+            separator = ",\n";
+            appendString(json.append("\"name\": "), stage.name);
+            appendString(json.append(", \"class\": "), stage.className);
+            json.append(", \"count\": ").append(histogram.getCount());
+            json.append(", \"totalMicros\": ").append(histogram.getTotal() / 1000);
+            json.append(", \"meanMicros\": ").append(Math.round(histogram.getMean() / 1000));
+            json.append(", \"minMicros\": ").append(histogram.getMin() / 1000);
+            json.append(", \"p50Micros\": ").append(histogram.getValueAtPercentile(50) / 1000);
+            json.append(", \"p90Micros\": ").append(histogram.getValueAtPercentile(90) / 1000);
+            json.append(", \"p99Micros\": ").append(histogram.getValueAtPercentile(99) / 1000);
+            json.append(", \"maxMicros\": ").append(histogram.getMax() / 1000);
+            appendString(json.append(", \"slowestDocument\": "), stage.slowestDocument);
+            LatencyHistogram allocations = stage.allocations;
+            json.append(", \"allocatedTotalBytes\": ").append(allocations.getTotal());
+            json.append(", \"allocatedMeanBytes\": ").append(Math.round(allocations.getMean()));
+            json.append(", \"allocatedP99Bytes\": ").append(allocations.getValueAtPercentile(99));
+            json.append(", \"allocatedMaxBytes\": ").append(allocations.getMax());
+            json.append('}');
+        }
+        json.append("\n  ],\n  \"documentAllocatedBytes\": {\"count\": ").append(documentAllocated.getCount());
+        json.append(", \"mean\": ").append(Math.round(documentAllocated.getMean()));
+        json.append(", \"p99\": ").append(documentAllocated.getValueAtPercentile(99));
+        json.append(", \"max\": ").append(documentAllocated.getMax()).append("},\n  \"annotationSets\": [");
+        separator = "\n";
+        for (Map.Entry<String, LatencyHistogram> set : retainedBySet.entrySet()) {
+            json.append(separator).append("    {");
+            separator = ",\n";
+            appendString(json.append("\"name\": "), set.getKey());
+            json.append(", \"documents\": ").append(set.getValue().getCount());
+            json.append(", \"retainedMeanBytes\": ").append(Math.round(set.getValue().getMean()));
+            json.append(", \"retainedMaxBytes\": ").append(set.getValue().getMax());
+            json.append('}');
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    public void writeReport(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    private static ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            ((ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+            return (ThreadMXBean) bean;
+        }
+        LOG.warn("Allocated bytes per thread are not supported, allocations are not profiled");
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void register() throws ResourceInstantiationException {
+        synchronized (TimedAnalyser.class) {
+            if (!Gate.getCreoleRegister().containsKey(TimedAnalyser.class.getName())) {
+                try {
+                    Gate.getCreoleRegister().registerComponent(TimedAnalyser.class);
+                } catch (GateException e) {
+                    throw new ResourceInstantiationException("Cannot register " + TimedAnalyser.class.getName(), e);
+                }
+            }
+        }
+    }
+
+    private static SerialController serialController(Controller controller) {
+        if (!(controller instanceof SerialController)) {
+            throw new IllegalArgumentException("Only serial controllers can be profiled, got " + controller.getClass().getName());
+        }
+        return (SerialController) controller;
+    }
+
+    /**
+     * Swap the PRs one by one, restoring the running strategy of each
+     * position for the new PR.
+     */
+    private static void replace(SerialController controller, List<ProcessingResource> prs) {
+        for (int i = 0; i < prs.size(); i++) {
+            RunningStrategy strategy = controller instanceof ConditionalSerialController
+                    ? ((ConditionalSerialController) controller).getRunningStrategies().get(i) : null;
+            controller.remove(i);
+            controller.add(i, prs.get(i));
+            if (strategy instanceof AnalyserRunningStrategy && prs.get(i) instanceof LanguageAnalyser) {
+                AnalyserRunningStrategy analyserStrategy = (AnalyserRunningStrategy) strategy;
+                ((ConditionalSerialController) controller).setRunningStrategy(i, new AnalyserRunningStrategy(
+                        (LanguageAnalyser) prs.get(i), analyserStrategy.getRunMode(),
+                        analyserStrategy.getFeatureName(), analyserStrategy.getFeatureValue()));
+            }
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Times and allocations of one PR name.
+     */
+    private final class Stage {
+        private final int index;
+        private final String name;
+        private final String className;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LatencyHistogram allocations = new LatencyHistogram();
+        private long slowestNanos = -1;
+        private String slowestDocument;
+
+        private Stage(int index, String name, String className) {
+            this.index = index;
+            this.name = name;
+            this.className = className;
+        }
+
+        private void record(long nanos, long allocated, Document doc) {
+            histogram.record(nanos);
+            synchronized (this) {
+                if (nanos > slowestNanos) {
+                    slowestNanos = nanos;
+                    slowestDocument = doc == null ? null : doc.getName();
+                }
+            }
+            if (allocated < 0) {
+                return;
+            }
+            allocations.record(allocated);
+            if (doc != null) {
+                synchronized (PipelineProfiler.this) {
+                    long[] bytes = documentAllocations.get(doc);
+                    if (bytes == null || bytes.length <= index) {
+                        bytes = bytes == null ? new long[stages.size()] : Arrays.copyOf(bytes, stages.size());
+                        documentAllocations.put(doc, bytes);
+                    }
+                    bytes[index] += allocated;
+                }
+            }
+        }
+    }
+
+    /**
+     * Language analyser running the wrapped PR, timing it and counting the
+     * bytes allocated by the running thread. It is a
+     * registered CREOLE resource, so the controller's parameter checks
+     * accept it in place of the PR.
+     */
+    @CreoleResource(name = "Timed processing resource", isPrivate = true)
+    public static class TimedAnalyser extends AbstractLanguageAnalyser {
+        private static final long serialVersionUID = 1L;
+
+        private transient ProcessingResource pr;
+        private transient Stage stage;
+
+        @Override
+        public void execute() throws ExecutionException {
+            LanguageAnalyser analyser = pr instanceof LanguageAnalyser ? (LanguageAnalyser) pr : null;
+            if (analyser != null) {
+                analyser.setDocument(document);
+                analyser.setCorpus(corpus);
+            }
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            try {
+                pr.execute();
+            } finally {
+                long nanos = System.nanoTime() - start;
+                stage.record(nanos, allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore, document);
+                if (analyser != null) {
+                    analyser.setDocument(null);
+                    analyser.setCorpus(null);
+                }
+            }
+        }
+
+        @Override
+        public void interrupt() {
+            pr.interrupt();
+        }
+
+        @Override
+        public boolean isInterrupted() {
+            return pr.isInterrupted();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.ProcessingResource;
+import gate.creole.ConditionalSerialController;
+import gate.creole.RunningStrategy;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for per processing resource profiling.
+ */
+public class PipelineProfilerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineProfilerTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static CorpusController controller;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void loadController() throws Exception {
+        // own instance, the registered application is shared with other tests
+        controller = GateRuntime.loadController(PLUGIN_NAME, PROJECT_FILE_NAME);
+    }
+
+    @AfterClass
+    public static void deleteController() {
+        Factory.deleteResource(controller);
+    }
+
+    @Test
+    public void shouldRecordEveryProcessingResourcePerDocument() throws Exception {
+        // given
+        int unprofiled = countAnnotations();
+        PipelineProfiler profiler = new PipelineProfiler();
+        List<ProcessingResource> originals = new ArrayList<>(((ConditionalSerialController) controller).getPRs());
+
+        // when
+        profiler.attach(controller);
+        int profiled = countAnnotations();
+        countAnnotations();
+
+        // then
+        assertEquals("Profiling should not change the annotations", unprofiled, profiled);
+        Map<String, LatencyHistogram> histograms = profiler.getHistograms();
+        assertEquals(originals.size(), histograms.size());
+        for (ProcessingResource pr : originals) {
+            LatencyHistogram histogram = histograms.get(pr.getName());
+            assertEquals(pr.getName(), 2, histogram.getCount());
+            assertTrue(pr.getName(), histogram.getMax() > 0);
+            assertTrue(profiler.getSlowestDocument(pr.getName()).startsWith("1.txt"));
+        }
+        LOG.info(profiler.report());
+
+        profiler.detach(controller);
+        assertFalse(profiler.isAttached(controller));
+        List<ProcessingResource> restored = ((ConditionalSerialController) controller).getPRs();
+        for (int i = 0; i < originals.size(); i++) {
+            assertSame(originals.get(i), restored.get(i));
+        }
+        assertEquals(unprofiled, countAnnotations());
+        assertEquals(2, histograms.values().iterator().next().getCount());
+    }
+
+    @Test
+    public void shouldKeepRunningStrategies() throws Exception {
+        ConditionalSerialController conditional = (ConditionalSerialController) controller;
+        List<Integer> modes = new ArrayList<>();
+        for (RunningStrategy strategy : conditional.getRunningStrategies()) {
+            modes.add(strategy.getRunMode());
+        }
+        PipelineProfiler profiler = new PipelineProfiler();
+
+        profiler.attach(controller);
+        try {
+            List<RunningStrategy> strategies = conditional.getRunningStrategies();
+            for (int i = 0; i < strategies.size(); i++) {
+                assertEquals(modes.get(i).intValue(), strategies.get(i).getRunMode());
+                assertSame(conditional.getPRs().get(i), strategies.get(i).getPR());
+                assertTrue(strategies.get(i).getPR() instanceof PipelineProfiler.TimedAnalyser);
+            }
+        } finally {
+            profiler.detach(controller);
+        }
+    }
+
+    @Test
+    public void shouldWriteJsonReport() throws Exception {
+        PipelineProfiler profiler = new PipelineProfiler();
+        profiler.attach(controller);
+        try {
+            countAnnotations();
+        } finally {
+            profiler.detach(controller);
+        }
+        File report = new File(folder.getRoot(), "profile/pipeline.json");
+
+        profiler.writeReport(report);
+
+        String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+        for (String prName : profiler.getHistograms().keySet()) {
+            assertTrue(prName, json.contains("\"name\": \"" + prName + "\""));
+        }
+        assertTrue(json, json.contains("\"p99Micros\": "));
+        assertTrue(json, json.contains("\"allocatedMaxBytes\": "));
+        LOG.info(json);
+    }
+
+    @Test
+    public void shouldAccountAllocationsAndAssertMemoryBudget() throws Exception {
+        // given
+        PipelineProfiler profiler = new PipelineProfiler();
+        Corpus corpus = CorpusConfig.forCorpusFiles("1.txt").createCorpus();
+        Document doc = corpus.get(0);
+
+        // when
+        profiler.attach(controller);
+        try {
+            controller.setCorpus(corpus);
+            controller.execute();
+            controller.setCorpus(null);
+        } finally {
+            profiler.detach(controller);
+        }
+        List<RetainedSizeEstimator.Footprint> footprints = profiler.recordRetained(doc);
+
+        // then
+        Map<String, Long> byStage = profiler.getAllocatedBytesByStage(doc);
+        assertEquals(profiler.getHistograms().keySet(), byStage.keySet());
+        long total = 0;
+        for (Map.Entry<String, Long> stage : byStage.entrySet()) {
+            assertEquals(stage.getKey(), 1, profiler.getAllocationHistogram(stage.getKey()).getCount());
+            assertEquals(stage.getKey(), profiler.getAllocationHistogram(stage.getKey()).getTotal(), stage.getValue().longValue());
+            total += stage.getValue();
+        }
+        assertEquals(total, profiler.getAllocatedBytes(doc));
+        assertTrue("Transducer should allocate", byStage.get("ANNIE NE Transducer") > 0);
+        assertEquals("", footprints.get(0).getName());
+        assertEquals(doc.getAnnotations().size(), footprints.get(0).getAnnotations());
+        LOG.info(profiler.report());
+
+        profiler.assertWithinBudget(doc, 1024L * 1024 * 1024, 64L * 1024 * 1024);
+        try {
+            profiler.assertWithinBudget(doc, 1024, 1024);
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("ANNIE NE Transducer: allocated "));
+            assertTrue(e.getMessage(), e.getMessage().contains("annotation set '': "));
+            LOG.info(e.getMessage());
+            return;
+        } finally {
+            Factory.deleteResource(doc);
+            Factory.deleteResource(corpus);
+        }
+        fail("A 1 KB budget should fail");
+    }
+
+    private static int countAnnotations() throws Exception {
+        Corpus corpus = CorpusConfig.forCorpusFiles("1.txt").createCorpus();
+        controller.setCorpus(corpus);
+        controller.execute();
+        controller.setCorpus(null);
+        Document doc = corpus.get(0);
+        int annotations = doc.getAnnotations().size();
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+        return annotations;
+    }
+}
@@ -0,0 +1,200 @@
+package net.myrts.gate;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimate of the heap retained by the annotation sets of a document,
+ * computed from annotation, node and feature counts and a per-object cost
+ * instead of walking the heap. The default costs were calibrated with
+ * {@link #calibrate()} on a 64-bit JVM with compressed references; the cost
+ * of an annotation covers its empty feature map and the index entries of
+ * the set. String feature values are counted with their characters every
+ * time they occur, so strings shared between annotations make the estimate
+ * err high.
+ */
+public class RetainedSizeEstimator {
+
+    private static final int STRING_BYTES = 40;
+
+    private static final int CALIBRATION_ANNOTATIONS = 100000;
+
+    private final long bytesPerAnnotation;
+    private final long bytesPerNode;
+    private final long bytesPerFeature;
+
+    public RetainedSizeEstimator() {
+        this(352, 40, 48);
+    }
+
+    public RetainedSizeEstimator(long bytesPerAnnotation, long bytesPerNode, long bytesPerFeature) {
+        this.bytesPerAnnotation = bytesPerAnnotation;
+        this.bytesPerNode = bytesPerNode;
+        this.bytesPerFeature = bytesPerFeature;
+    }
+
+    public long getBytesPerAnnotation() {
+        return bytesPerAnnotation;
+    }
+
+    public long getBytesPerNode() {
+        return bytesPerNode;
+    }
+
+    public long getBytesPerFeature() {
+        return bytesPerFeature;
+    }
+
+    /**
+     * Footprints of the default and every named annotation set.
+     */
+    public List<Footprint> estimate(Document doc) {
+        List<Footprint> footprints = new ArrayList<>();
+        footprints.add(estimate("", doc.getAnnotations()));
+        List<String> names = new ArrayList<>(doc.getAnnotationSetNames());
+        Collections.sort(names);
+        for (String name : names) {
+            footprints.add(estimate(name, doc.getAnnotations(name)));
+        }
+        return footprints;
+    }
+
+    public Footprint estimate(String name, AnnotationSet set) {
+        long[] offsets = new long[set.size() * 2];
+        int size = 0;
+        long features = 0;
+        long stringBytes = 0;
+        for (Annotation annotation : set) {
+            offsets[size++] = annotation.getStartNode().getOffset();
+            offsets[size++] = annotation.getEndNode().getOffset();
+            FeatureMap featureMap = annotation.getFeatures();
+            if (featureMap == null) {
+                continue;
+            }
+            for (Map.Entry<Object, Object> feature : featureMap.entrySet()) {
+                features++;
+                if (feature.getValue() instanceof String) {
+                    stringBytes += STRING_BYTES + 2L * ((String) feature.getValue()).length();
+                }
+            }
+        }
+        Arrays.sort(offsets, 0, size);
+        int nodes = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || offsets[i] != offsets[i - 1]) {
+                nodes++;
+            }
+        }
+        long bytes = set.size() * bytesPerAnnotation + nodes * bytesPerNode + features * bytesPerFeature + stringBytes;
+        return new Footprint(name, set.size(), nodes, features, bytes);
+    }
+
+    /**
+     * Measure the per-object costs on this JVM from the heap used by a
+     * synthetic document: annotations on new nodes, annotations on existing
+     * nodes and features with shared values. Takes a few seconds and relies
+     * on {@code System.gc()}, so run it on an otherwise idle JVM.
+     */
+    public static RetainedSizeEstimator calibrate() throws GateException {
+        GateRuntime.init();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < CALIBRATION_ANNOTATIONS; i++) {
+            text.append("ab ");
+        }
+        Document doc = Factory.newDocument(text.toString());
+        try {
+            AnnotationSet set = doc.getAnnotations();
+            set.add(0L, 1L, "Warmup", Factory.newFeatureMap());
+            long before = usedMemory();
+            for (int i = 0; i < CALIBRATION_ANNOTATIONS; i++) {
+                set.add(i * 3L + 1, i * 3L + 2, "Calibration", Factory.newFeatureMap());
+            }
+            long withNodes = usedMemory();
+            for (int i = 0; i < CALIBRATION_ANNOTATIONS; i++) {
+                set.add(i * 3L + 1, i * 3L + 2, "Calibration", Factory.newFeatureMap());
+            }
+            long withAnnotations = usedMemory();
+            for (Annotation annotation : set.get("Calibration")) {
+                annotation.getFeatures().put("kind", "calibration");
+            }
+            long withFeatures = usedMemory();
+
+            long perAnnotation = (withAnnotations - withNodes) / CALIBRATION_ANNOTATIONS;
+            long perNode = Math.max(0, ((withNodes - before) / CALIBRATION_ANNOTATIONS - perAnnotation) / 2);
+            long perFeature = Math.max(0, (withFeatures - withAnnotations) / (2L * CALIBRATION_ANNOTATIONS));
+            return new RetainedSizeEstimator(perAnnotation, perNode, perFeature);
+        } finally {
+            Factory.deleteResource(doc);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Override
+    public String toString() {
+        return "RetainedSizeEstimator{annotation=" + bytesPerAnnotation + " B, node=" + bytesPerNode
+                + " B, feature=" + bytesPerFeature + " B}";
+    }
+
+    /**
+     * Counts and estimated retained bytes of one annotation set, the default
+     * set has an empty name.
+     */
+    public static final class Footprint {
+        private final String name;
+        private final int annotations;
+        private final int nodes;
+        private final long features;
+        private final long bytes;
+
+        Footprint(String name, int annotations, int nodes, long features, long bytes) {
+            this.name = name;
+            this.annotations = annotations;
+            this.nodes = nodes;
+            this.features = features;
+            this.bytes = bytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAnnotations() {
+            return annotations;
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+        public long getFeatures() {
+            return features;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "'" + name + "': " + annotations + " annotations, " + nodes + " nodes, " + features + " features, ~"
+                    + bytes / 1024 + " KB";
+        }
+    }
+}
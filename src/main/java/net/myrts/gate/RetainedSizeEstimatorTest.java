@@ -0,0 +1,103 @@
+package net.myrts.gate;
+
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the retained size estimate of annotation sets.
+ */
+public class RetainedSizeEstimatorTest {
+    private static final Logger LOG = LoggerFactory.getLogger(RetainedSizeEstimatorTest.class);
+
+    private static final int TOKENS = 100000;
+
+    @Test
+    public void shouldCountAnnotationsNodesAndFeatures() throws Exception {
+        // given
+        GateRuntime.init();
+        Document doc = Factory.newDocument("Hepburn met Griswold");
+        doc.getAnnotations().add(0L, 7L, "Person", features("gender", "male"));
+        doc.getAnnotations().add(12L, 20L, "Person", features("gender", "male"));
+        doc.getAnnotations().add(0L, 20L, "Sentence", Factory.newFeatureMap());
+        doc.getAnnotations("Original markups").add(0L, 7L, "b", Factory.newFeatureMap());
+        RetainedSizeEstimator estimator = new RetainedSizeEstimator(100, 10, 1);
+
+        // when
+        List<RetainedSizeEstimator.Footprint> footprints = estimator.estimate(doc);
+
+        // then
+        assertEquals(2, footprints.size());
+        RetainedSizeEstimator.Footprint defaultSet = footprints.get(0);
+        assertEquals("", defaultSet.getName());
+        assertEquals(3, defaultSet.getAnnotations());
+        assertEquals(4, defaultSet.getNodes());
+        assertEquals(2, defaultSet.getFeatures());
+        assertEquals(3 * 100 + 4 * 10 + 2 + 2 * (40 + 2 * "male".length()), defaultSet.getBytes());
+        assertEquals("Original markups", footprints.get(1).getName());
+        assertEquals(1, footprints.get(1).getAnnotations());
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldEstimateMeasuredHeapOfAnnotations() throws Exception {
+        GateRuntime.init();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < TOKENS; i++) {
+            text.append("word ");
+        }
+        Document doc = Factory.newDocument(text.toString());
+        String[] kinds = {"word", "lowercase"};
+
+        AnnotationSet tokens = doc.getAnnotations();
+        for (int i = 0; i < TOKENS; i++) {
+            FeatureMap features = Factory.newFeatureMap();
+            features.put("kind", kinds[0]);
+            features.put("orth", kinds[1]);
+            tokens.add(i * 5L, i * 5L + 4, "Token", features);
+            tokens.add(i * 5L + 4, i * 5L + 5, "SpaceToken", Factory.newFeatureMap());
+        }
+        long estimated = new RetainedSizeEstimator().estimate("", tokens).getBytes();
+        // measured as the heap freed by clearing the set, soft references cleared while it was built do not count
+        long with = usedMemory();
+        tokens.clear();
+        long measured = with - usedMemory();
+
+        LOG.info(2 * TOKENS + " annotations: measured " + measured / 1024 + " KB, estimated " + estimated / 1024 + " KB");
+        // shared feature strings are counted per occurrence, so the estimate may be high
+        assertTrue("Estimate should cover the measured heap", estimated > measured * 0.8);
+        assertTrue("Estimate should stay within twice the measured heap", estimated < measured * 2);
+        Factory.deleteResource(doc);
+    }
+
+    @Test
+    public void shouldCalibrateOnThisJvm() throws Exception {
+        RetainedSizeEstimator calibrated = RetainedSizeEstimator.calibrate();
+
+        LOG.info("Calibrated " + calibrated);
+        assertTrue(calibrated.toString(), calibrated.getBytesPerAnnotation() > 0);
+    }
+
+    private static FeatureMap features(String name, String value) {
+        FeatureMap features = Factory.newFeatureMap();
+        features.put(name, value);
+        return features;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
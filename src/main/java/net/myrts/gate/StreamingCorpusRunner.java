@@ -0,0 +1,95 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.CorpusController;
+import gate.Document;
+import gate.Factory;
+import gate.util.GateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Annotates documents from a lazy source in bounded batches instead of
+ * loading the whole corpus first. A batch is put in a transient corpus and
+ * executed with a controller borrowed from the pool, every document is then
+ * handed to the sink and unloaded before the next batch is created, so at
+ * most {@code batchSize} documents are loaded at any time and peak heap
+ * depends on the largest documents rather than on the corpus size.
+ */
+public class StreamingCorpusRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingCorpusRunner.class);
+
+    private final ControllerPool pool;
+    private final int batchSize;
+
+    public StreamingCorpusRunner(ControllerPool pool) {
+        this(pool, 1);
+    }
+
+    public StreamingCorpusRunner(ControllerPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive, got " + batchSize);
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int annotate(CorpusConfig config, DocumentSink sink) throws GateException, InterruptedException {
+        return annotate(config.documentSource(), sink);
+    }
+
+    /**
+     * Annotate every document of the source, returns how many were annotated.
+     * Documents are unloaded even when execution or the sink fails.
+     */
+    public int annotate(DocumentSource source, DocumentSink sink) throws GateException, InterruptedException {
+        PipelineProfiler profiler = pool.getProfiler();
+        Corpus corpus = Factory.newCorpus("StandAloneAnnie stream");
+        CorpusController controller = pool.borrow();
+        int annotated = 0;
+        long start = System.nanoTime();
+        try {
+            controller.setCorpus(corpus);
+            List<Document> batch = new ArrayList<>(batchSize);
+            while (true) {
+                try {
+                    Document doc;
+                    while (batch.size() < batchSize && (doc = source.next()) != null) {
+                        batch.add(doc);
+                    }
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    corpus.addAll(batch);
+                    controller.execute();
+                    for (Document annotatedDoc : batch) {
+                        if (profiler != null) {
+                            profiler.recordRetained(annotatedDoc);
+                        }
+                        sink.accept(annotatedDoc);
+                        annotated++;
+                    }
+                } finally {
+                    corpus.clear();
+                    for (Document doc : batch) {
+                        Factory.deleteResource(doc);
+                    }
+                    batch.clear();
+                }
+            }
+        } finally {
+            pool.release(controller);
+            Factory.deleteResource(corpus);
+        }
+        LOG.info("Streamed " + annotated + " document(s) in batches of " + batchSize + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        return annotated;
+    }
+}
@@ -0,0 +1,122 @@
+package net.myrts.gate;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.creole.ResourceData;
+import gate.util.GateException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for streaming corpus annotation.
+ */
+public class StreamingCorpusRunnerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingCorpusRunnerTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int DOCUMENTS = 5;
+
+    private static final int BATCH_SIZE = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldAnnotateInBoundedBatches() throws Exception {
+        // given
+        CorpusConfig config = new CorpusConfig(createDocuments());
+        ControllerPool pool = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME);
+        Corpus loaded = pool.annotate(config);
+        List<Integer> expected = new ArrayList<>();
+        for (Document doc : loaded) {
+            expected.add(doc.getAnnotations().size());
+        }
+        delete(loaded);
+        int before = loadedDocuments();
+        StreamingCorpusRunner runner = new StreamingCorpusRunner(pool, BATCH_SIZE);
+        List<Integer> streamed = new ArrayList<>();
+        List<URL> order = new ArrayList<>();
+        int[] peak = new int[1];
+
+        // when
+        int annotated = runner.annotate(config, doc -> {
+            streamed.add(doc.getAnnotations().size());
+            order.add(doc.getSourceUrl());
+            peak[0] = Math.max(peak[0], loadedDocuments() - before);
+        });
+
+        // then
+        assertEquals(DOCUMENTS, annotated);
+        assertEquals(expected, streamed);
+        assertEquals(config.getDocumentUrls(), order);
+        assertTrue("At most one batch loaded, got " + peak[0], peak[0] <= BATCH_SIZE);
+        assertEquals(before, loadedDocuments());
+        LOG.info("Streamed " + annotated + " documents with at most " + peak[0] + " loaded");
+    }
+
+    @Test
+    public void shouldUnloadDocumentsWhenSinkFails() throws Exception {
+        CorpusConfig config = new CorpusConfig(createDocuments());
+        StreamingCorpusRunner runner = GateRuntime.getStreamingCorpusRunner(PLUGIN_NAME, PROJECT_FILE_NAME);
+        int before = loadedDocuments();
+
+        try {
+            runner.annotate(config, doc -> {
+                throw new GateException("Sink failed for " + doc.getName());
+            });
+            fail("Sink failure should be rethrown");
+        } catch (GateException e) {
+            LOG.info(e.getMessage());
+        }
+
+        assertEquals(before, loadedDocuments());
+        assertEquals(DOCUMENTS, runner.annotate(config, doc -> {
+        }));
+    }
+
+    private List<URL> createDocuments() throws Exception {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            File file = folder.newFile(i + ".txt");
+            if (i % 2 == 0) {
+                Files.copy(new File("src/main/resources/corpus/1.txt").toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.write(file.toPath(), ("Document " + i + " was written in Louisville, Kentucky.").getBytes(StandardCharsets.UTF_8));
+            }
+            urls.add(file.toURI().toURL());
+        }
+        return urls;
+    }
+
+    private static int loadedDocuments() {
+        ResourceData data = Gate.getCreoleRegister().get("gate.corpora.DocumentImpl");
+        return data == null ? 0 : data.getInstantiations().size();
+    }
+
+    private static void delete(Corpus corpus) {
+        for (Document doc : new ArrayList<>(corpus)) {
+            Factory.deleteResource(doc);
+        }
+        Factory.deleteResource(corpus);
+    }
+}
@@ -0,0 +1,213 @@
+package net.myrts.gate;
+
+import document.Annotation;
+import document.AnnotationSet;
+import document.Feature;
+import document.GateDocument;
+import document.InterningAdapter;
+import document.StringInterner;
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for interning of the document model strings.
+ */
+public class StringInterningTest {
+    private static final Logger LOG = LoggerFactory.getLogger(StringInterningTest.class);
+
+    private static final String PLUGIN_NAME = "ANNIE";
+
+    private static final String PROJECT_FILE_NAME = "ANNIE_with_defaults.gapp";
+
+    private static final int SYNTHETIC_ANNOTATIONS = 300000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldShareStringsAcrossCorpus() throws Exception {
+        // given
+        StringInterner interner = new StringInterner();
+        JAXBContext context = JAXBContext.newInstance(GateDocument.class);
+        Map<String, String> firstSeen = new HashMap<>();
+
+        // when
+        // the corpus has one document, it is read twice as two documents would be
+        for (String fileName : new String[]{"first.xml", "second.xml"}) {
+            Unmarshaller unmarshaller = context.createUnmarshaller();
+            unmarshaller.setAdapter(InterningAdapter.class, new InterningAdapter(interner));
+            GateDocument gateDoc = (GateDocument) unmarshaller.unmarshal(saveAnnotatedDocument("1.txt", fileName));
+
+            // then
+            for (AnnotationSet annotationSet : gateDoc.getAnnotationSet()) {
+                for (Annotation annotation : annotationSet.getAnnotation()) {
+                    assertSame(firstSeen.computeIfAbsent(annotation.getType(), type -> type), annotation.getType());
+                    for (Feature feature : annotation.getFeature()) {
+                        assertSame(firstSeen.computeIfAbsent(feature.getName(), name -> name), feature.getName());
+                    }
+                }
+            }
+        }
+        LOG.info("Corpus of 2 documents: " + interner.report());
+        assertTrue(interner.getDistinct() * 5 < interner.getTotal());
+    }
+
+    @Test
+    public void shouldInternWhenConvertingFeatureMaps() throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles("1.txt"));
+        Document doc = corpus.get(0);
+        String content = doc.getContent().toString();
+        doc.getFeatures().put("content", content);
+        StringInterner interner = new StringInterner();
+
+        GateDocument gateDoc = GateDocumentConverter.toGateDocument(doc, interner);
+
+        assertEquals(1 + doc.getNamedAnnotationSets().size(), gateDoc.getAnnotationSet().size());
+        AnnotationSet defaultSet = gateDoc.getAnnotationSet().get(0);
+        assertEquals(doc.getAnnotations().size(), defaultSet.getAnnotation().size());
+        List<Annotation> annotations = defaultSet.getAnnotation();
+        assertSame(interner.intern(new String("Token")), annotations.get(0).getType());
+        assertEquals(content.length(), textLength(gateDoc));
+        // document features stay out of the pool
+        String copy = new String(content);
+        assertSame(copy, interner.intern(copy));
+        LOG.info("Converted document: " + interner.report());
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+    }
+
+    @Test
+    public void shouldNotInternLongValues() {
+        StringInterner interner = new StringInterner();
+        InterningAdapter adapter = new InterningAdapter(interner);
+        StringBuilder content = new StringBuilder();
+        while (content.length() <= InterningAdapter.MAX_INTERNED_LENGTH) {
+            content.append("Henry Griswold ");
+        }
+
+        adapter.unmarshal(content.toString());
+
+        assertSame("word", adapter.unmarshal("word"));
+        assertSame("word", adapter.unmarshal(new String("word")));
+        assertEquals(1, interner.getDistinct());
+        assertEquals(2, interner.getTotal());
+    }
+
+    @Test
+    public void internedDocumentShouldTakeLessHeap() throws Exception {
+        File file = writeSyntheticDocument(SYNTHETIC_ANNOTATIONS);
+        JAXBContext context = JAXBContext.newInstance(GateDocument.class);
+        Unmarshaller plain = context.createUnmarshaller();
+        plain.setAdapter(InterningAdapter.class, new InterningAdapter() {
+            @Override
+            public String unmarshal(String value) {
+                return value;
+            }
+        });
+        StringInterner interner = new StringInterner();
+        Unmarshaller interning = context.createUnmarshaller();
+        interning.setAdapter(InterningAdapter.class, new InterningAdapter(interner));
+
+        long baseline = usedMemory();
+        GateDocument plainDoc = (GateDocument) plain.unmarshal(file);
+        long plainRetained = usedMemory() - baseline;
+        plainDoc = null;
+        baseline = usedMemory();
+        GateDocument internedDoc = (GateDocument) interning.unmarshal(file);
+        long internedRetained = usedMemory() - baseline;
+
+        LOG.info(SYNTHETIC_ANNOTATIONS + " annotations: " + plainRetained / 1024 + " KB without interning, " + internedRetained / 1024
+                + " KB interned; " + interner.report());
+        assertEquals(SYNTHETIC_ANNOTATIONS, internedDoc.getAnnotationSet().get(0).getAnnotation().size());
+        assertTrue("Interned document should take less heap", internedRetained < plainRetained * 3 / 4);
+    }
+
+    private File saveAnnotatedDocument(String corpusFileName, String fileName) throws Exception {
+        Corpus corpus = GateRuntime.getControllerPool(PLUGIN_NAME, PROJECT_FILE_NAME).annotate(CorpusConfig.forCorpusFiles(corpusFileName));
+        Document doc = corpus.get(0);
+        File file = folder.newFile(fileName);
+        GateXmlWriter.writeDocument(doc, file);
+        Factory.deleteResource(doc);
+        Factory.deleteResource(corpus);
+        return file;
+    }
+
+    private static int textLength(GateDocument gateDoc) {
+        int length = 0;
+        for (Object content : gateDoc.getTextWithNodes().getContent()) {
+            if (content instanceof String) {
+                length += ((String) content).length();
+            }
+        }
+        return length;
+    }
+
+    private File writeSyntheticDocument(int annotations) throws Exception {
+        File file = folder.newFile("synthetic.xml");
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("GateDocument");
+            writer.writeStartElement("GateDocumentFeatures");
+            writer.writeEndElement();
+            writer.writeStartElement("TextWithNodes");
+            writer.writeCharacters("Henry Griswold");
+            writer.writeEndElement();
+            writer.writeStartElement("AnnotationSet");
+            for (int i = 0; i < annotations; i++) {
+                writer.writeStartElement("Annotation");
+                writer.writeAttribute("Type", i % 10 == 0 ? "Person" : "Token");
+                writer.writeAttribute("StartNode", "0");
+                writer.writeAttribute("EndNode", "5");
+                writeFeature(writer, "kind", "word");
+                writeFeature(writer, "orth", "upperInitial");
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        }
+        return file;
+    }
+
+    private void writeFeature(XMLStreamWriter writer, String name, String value) throws Exception {
+        writer.writeStartElement("Feature");
+        writer.writeStartElement("Name");
+        writer.writeCharacters(name);
+        writer.writeEndElement();
+        writer.writeStartElement("Value");
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
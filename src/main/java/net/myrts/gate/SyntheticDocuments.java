@@ -0,0 +1,40 @@
+package net.myrts.gate;
+
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.util.GateException;
+
+import java.util.function.IntFunction;
+
+/**
+ * Large documents for tests measuring time or memory: a text of alternating
+ * words with one annotation of two features per word.
+ */
+public final class SyntheticDocuments {
+
+    private SyntheticDocuments() {
+    }
+
+    /**
+     * Document of the given number of words, the type of the annotation of
+     * the i-th word given by the function.
+     */
+    public static Document create(int tokens, IntFunction<String> annotationType) throws GateException {
+        GateRuntime.init();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            content.append(i % 2 == 0 ? "Griswold " : "Kentucky ");
+        }
+        Document doc = Factory.newDocument(content.toString());
+        AnnotationSet annotations = doc.getAnnotations();
+        for (int i = 0; i < tokens; i++) {
+            FeatureMap features = Factory.newFeatureMap();
+            features.put("kind", "word");
+            features.put("orth", "upperInitial");
+            annotations.add((long) i * 9, (long) i * 9 + 8, annotationType.apply(i), features);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,107 @@
+package net.myrts.gate;
+
+/**
+ * Read-only view of a region of a shared string. Creating a region does not
+ * copy any characters, {@link #toString()} does.
+ * <p>
+ * Two regions are equal when they hold the same characters, and the hash
+ * code is the one of the equal {@link String}, so regions and strings can be
+ * compared with {@link #contentEquals(CharSequence, CharSequence)} and mixed
+ * in hash keys that use it.
+ */
+public final class TextRegion implements CharSequence {
+
+    private final String content;
+    private final int start;
+    private final int end;
+    private int hash;
+
+    public TextRegion(String content) {
+        this(content, 0, content.length());
+    }
+
+    public TextRegion(String content, int start, int end) {
+        if (start < 0 || end > content.length() || start > end) {
+            throw new IndexOutOfBoundsException("Region " + start + "-" + end + " of content of length " + content.length());
+        }
+        this.content = content;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return content.charAt(start + index);
+    }
+
+    @Override
+    public TextRegion subSequence(int start, int end) {
+        return new TextRegion(content, this.start + start, this.start + end);
+    }
+
+    /**
+     * Whether the region holds the same characters as the text.
+     */
+    public boolean contentEquals(CharSequence text) {
+        if (text instanceof String) {
+            String string = (String) text;
+            return string.length() == length() && content.regionMatches(start, string, 0, string.length());
+        }
+        return contentEquals(this, text);
+    }
+
+    /**
+     * Whether both sequences hold the same characters, {@code null} is only
+     * equal to {@code null}.
+     */
+    public static boolean contentEquals(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        if (a instanceof TextRegion) {
+            TextRegion region = (TextRegion) a;
+            if (b instanceof String) {
+                return region.contentEquals(b);
+            }
+        }
+        if (b instanceof TextRegion && a instanceof String) {
+            return ((TextRegion) b).contentEquals(a);
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof TextRegion && contentEquals((TextRegion) o);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int i = start; i < end; i++) {
+                h = 31 * h + content.charAt(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return content.substring(start, end);
+    }
+}
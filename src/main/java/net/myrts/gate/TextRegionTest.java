@@ -0,0 +1,51 @@
+package net.myrts.gate;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for text region views.
+ */
+public class TextRegionTest {
+
+    private static final String CONTENT = "Hepburn met Griswold in Louisville, Kentucky";
+
+    @Test
+    public void shouldViewRegionOfContent() {
+        TextRegion region = new TextRegion(CONTENT, 12, 20);
+
+        assertEquals(8, region.length());
+        assertEquals('G', region.charAt(0));
+        assertEquals("Griswold", region.toString());
+        assertEquals("swold", region.subSequence(3, 8).toString());
+    }
+
+    @Test
+    public void shouldCompareWithStringsInPlace() {
+        TextRegion region = new TextRegion(CONTENT, 12, 20);
+
+        assertTrue(region.contentEquals("Griswold"));
+        assertFalse(region.contentEquals("Griswol"));
+        assertFalse(region.contentEquals("Louisvill"));
+        assertTrue(TextRegion.contentEquals("Griswold", region));
+        assertTrue(TextRegion.contentEquals(new StringBuilder("Griswold"), region));
+        assertFalse(TextRegion.contentEquals(null, region));
+    }
+
+    @Test
+    public void shouldHashLikeEqualString() {
+        TextRegion region = new TextRegion(CONTENT, 24, 34);
+        Map<TextRegion, String> regions = new HashMap<>();
+        regions.put(region, "city");
+
+        assertEquals("Louisville".hashCode(), region.hashCode());
+        assertEquals(new TextRegion("Louisville"), region);
+        assertEquals("city", regions.get(new TextRegion("Louisville")));
+    }
+}